@@ -0,0 +1,342 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import com.zavtech.morpheus.util.Asserts;
+
+/**
+ * A closeable pipeline that runs blocking Yahoo Finance downloads with a bounded number of requests in flight.
+ *
+ * Tasks run on virtual threads when the JVM supports them, which allows thousands of tickers to be submitted without
+ * sizing a platform thread pool, and otherwise fall back to a fixed pool of daemon threads sized to the in-flight limit.
+ * In both cases a semaphore bounds the number of concurrent downloads, and each thread is named after the task it is
+ * running while it runs so that thread dumps identify the ticker being loaded. Tasks may be submitted with a deadline
+ * that starts when the task starts running, after which its future completes with a TimeoutException and the thread
+ * running it is interrupted.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooFetchPipeline implements AutoCloseable {
+
+    private static final ThreadLocal<Deadline> deadlines = new ThreadLocal<>();
+
+    private String name;
+    private int maxInFlight;
+    private Semaphore semaphore;
+    private ExecutorService executor;
+    private ScheduledExecutorService timer;
+    private boolean virtual;
+
+
+    /**
+     * Constructor
+     * @param name          the name for this pipeline, used as a prefix for thread names
+     * @param maxInFlight   the max number of tasks that can run concurrently
+     */
+    public YahooFetchPipeline(String name, int maxInFlight) {
+        Asserts.assertTrue(maxInFlight > 0, "The max in flight must be > 0");
+        this.name = name;
+        this.maxInFlight = maxInFlight;
+        this.semaphore = new Semaphore(maxInFlight);
+        this.executor = createVirtualExecutor();
+        this.virtual = executor != null;
+        if (executor == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+                final Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, name + "-Timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Returns a virtual thread per task executor if supported by this JVM
+     * @return  the virtual thread executor, null if not supported
+     */
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            final Object executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return (ExecutorService)executor;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns the name of this pipeline
+     * @return  the pipeline name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the max number of tasks that can run concurrently
+     * @return  the max in flight
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Returns true if this pipeline runs tasks on virtual threads
+     * @return  true if tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Returns true if this pipeline has been closed
+     * @return  true if closed
+     */
+    public boolean isClosed() {
+        return executor.isShutdown();
+    }
+
+
+    /**
+     * Submits a task to this pipeline, which never blocks the caller
+     * The task waits for an in-flight permit on its own thread, and runs with its thread named after the label. A task
+     * whose future is cancelled before it acquires a permit is skipped, while one already running runs to completion.
+     * @param label     the label for the task, typically the ticker
+     * @param task      the task to execute
+     * @param <T>       the result type
+     * @return          the future result of the task
+     * @throws YahooException   if this pipeline has been closed
+     */
+    public <T> CompletableFuture<T> submit(String label, Callable<T> task) {
+        return submit(label, null, task);
+    }
+
+
+    /**
+     * Submits a task to this pipeline with a deadline, which never blocks the caller
+     * The deadline starts when the task acquires an in-flight permit, so time spent queued behind other tasks does not
+     * count against it. If the deadline passes before the task completes, the future completes with a TimeoutException
+     * and the thread running the task is interrupted, although a blocking socket read may only end at its read timeout.
+     * @param label     the label for the task, typically the ticker
+     * @param deadline  the max time the task may run for, null for no deadline
+     * @param task      the task to execute
+     * @param <T>       the result type
+     * @return          the future result of the task
+     * @throws YahooException   if this pipeline has been closed
+     */
+    public <T> CompletableFuture<T> submit(String label, Duration deadline, Callable<T> task) {
+        try {
+            final Task<T> runnable = new Task<>(label, deadline, task);
+            this.executor.execute(runnable);
+            return runnable.future;
+        } catch (RejectedExecutionException ex) {
+            throw new YahooException("The fetch pipeline " + name + " has been closed", ex);
+        }
+    }
+
+
+    /**
+     * A task submitted to this pipeline, which holds its future so it can be failed if the pipeline closes first
+     * @param <T>   the result type
+     */
+    private class Task<T> implements Runnable {
+
+        private String label;
+        private Duration deadline;
+        private Callable<T> task;
+        private CompletableFuture<T> future = new CompletableFuture<>();
+
+        /**
+         * Constructor
+         * @param label     the label for the task, typically the ticker
+         * @param deadline  the max time the task may run for, null for no deadline
+         * @param task      the task to execute
+         */
+        Task(String label, Duration deadline, Callable<T> task) {
+            this.label = label;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            final Thread thread = Thread.currentThread();
+            final String threadName = thread.getName();
+            try {
+                semaphore.acquire();
+                Deadline timeout = null;
+                try {
+                    if (future.isDone()) {
+                        return;
+                    }
+                    timeout = deadline != null ? new Deadline(thread, future, label, deadline) : null;
+                    deadlines.set(timeout);
+                    thread.setName(name + "-" + label);
+                    future.complete(task.call());
+                } finally {
+                    if (timeout != null) {
+                        timeout.finish();
+                        deadlines.remove();
+                    }
+                    semaphore.release();
+                    thread.setName(threadName);
+                }
+            } catch (InterruptedException ex) {
+                thread.interrupt();
+                if (isClosed()) {
+                    this.closed();
+                } else {
+                    this.future.completeExceptionally(ex);
+                }
+            } catch (Throwable t) {
+                this.future.completeExceptionally(t);
+            }
+        }
+
+        /**
+         * Fails the future for this task because the pipeline was closed before the task could run
+         */
+        void closed() {
+            this.future.completeExceptionally(new YahooException("The fetch pipeline " + name + " has been closed"));
+        }
+    }
+
+
+    /**
+     * Calls the callable on the current thread, where the deadline of the current task only interrupts it if the condition holds
+     * If the deadline passes while the condition is false, the task future still fails with a TimeoutException, but the
+     * interrupt is deferred until the callable returns. This allows a task to run work that other callers are waiting on
+     * without one caller's deadline failing it for the rest. Outside a task with a deadline, the callable simply runs.
+     * @param condition the condition evaluated when the deadline passes, true to interrupt immediately
+     * @param callable  the callable to run
+     * @param <T>       the result type
+     * @return          the result of the callable
+     * @throws Exception    if the callable fails
+     */
+    static <T> T interruptibleIf(BooleanSupplier condition, Callable<T> callable) throws Exception {
+        final Deadline deadline = deadlines.get();
+        if (deadline == null) {
+            return callable.call();
+        } else {
+            deadline.setCondition(condition);
+            try {
+                return callable.call();
+            } finally {
+                deadline.setCondition(null);
+            }
+        }
+    }
+
+
+    /**
+     * A timer that fails the future of a running task when its deadline passes, and interrupts the running thread
+     */
+    private class Deadline {
+
+        private Thread thread;
+        private boolean running;
+        private boolean expired;
+        private boolean deferred;
+        private BooleanSupplier condition;
+        private ScheduledFuture<?> scheduled;
+
+        /**
+         * Constructor
+         * @param thread    the thread running the task
+         * @param future    the future for the task
+         * @param label     the label for the task
+         * @param deadline  the max time the task may run for
+         */
+        Deadline(Thread thread, CompletableFuture<?> future, String label, Duration deadline) {
+            this.thread = thread;
+            this.running = true;
+            this.scheduled = timer.schedule(() -> {
+                synchronized (this) {
+                    final String message = "Task " + label + " exceeded deadline of " + deadline.toMillis() + " millis";
+                    if (running && future.completeExceptionally(new TimeoutException(message))) {
+                        this.expired = true;
+                        if (condition == null || condition.getAsBoolean()) {
+                            thread.interrupt();
+                        } else {
+                            this.deferred = true;
+                        }
+                    }
+                }
+            }, deadline.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Sets the condition under which an expired deadline interrupts the thread, and raises any deferred interrupt when cleared
+         * @param condition the condition, null to always interrupt
+         */
+        synchronized void setCondition(BooleanSupplier condition) {
+            this.condition = condition;
+            if (condition == null && deferred) {
+                this.deferred = false;
+                this.thread.interrupt();
+            }
+        }
+
+        /**
+         * Called when the task finishes, and clears any interrupt raised by the deadline so it cannot leak to the next task
+         */
+        void finish() {
+            this.scheduled.cancel(false);
+            synchronized (this) {
+                this.running = false;
+                if (expired) {
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Closes this pipeline, interrupting running tasks and failing the futures of tasks that have not started
+     */
+    @Override
+    public void close() {
+        for (Runnable runnable : executor.shutdownNow()) {
+            if (runnable instanceof Task) {
+                ((Task<?>)runnable).closed();
+            }
+        }
+        this.timer.shutdownNow();
+    }
+}
@@ -19,6 +19,7 @@ import java.net.Inet4Address;
 import java.time.LocalDate;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 import com.zavtech.morpheus.array.Array;
 import com.zavtech.morpheus.frame.DataFrame;
@@ -43,6 +44,7 @@ public class YahooFinance {
     static {
         DataFrameSource.register(new YahooOptionSource());
         DataFrameSource.register(new YahooQuoteHistorySource());
+        DataFrameSource.register(new YahooIntradaySource());
         DataFrameSource.register(new YahooQuoteLiveSource());
         DataFrameSource.register(new YahooReturnSource());
         DataFrameSource.register(new YahooStatsSource());
@@ -280,6 +282,55 @@ public class YahooFinance {
     }
 
 
+    /**
+     * Loads end of day OHLC quote bars for multiple securities, passing each DataFrame to the consumer as it arrives
+     * @param tickers       the security ticker symbols
+     * @param start         the start date for range
+     * @param end           the end date for range
+     * @param adjusted      true to adjust prices for splits and dividends
+     * @param consumer      the consumer to receive the OHLC end of day bars for each ticker
+     */
+    public void getQuoteBars(Iterable<String> tickers, LocalDate start, LocalDate end, boolean adjusted, BiConsumer<String,DataFrame<LocalDate,YahooField>> consumer) {
+        this.getQuoteBars(tickers, start, end, adjusted, 10, consumer);
+    }
+
+
+    /**
+     * Loads end of day OHLC quote bars for multiple securities, passing each DataFrame to the consumer as it arrives
+     * @param tickers       the security ticker symbols
+     * @param start         the start date for range
+     * @param end           the end date for range
+     * @param adjusted      true to adjust prices for splits and dividends
+     * @param maxInFlight   the max number of requests to Yahoo Finance in flight at any one time
+     * @param consumer      the consumer to receive the OHLC end of day bars for each ticker
+     */
+    public void getQuoteBars(Iterable<String> tickers, LocalDate start, LocalDate end, boolean adjusted, int maxInFlight, BiConsumer<String,DataFrame<LocalDate,YahooField>> consumer) {
+        DataFrameSource.lookup(YahooQuoteHistorySource.class).read(tickers, maxInFlight, options -> {
+            options.withStartDate(start);
+            options.withEndDate(end);
+            options.withDividendAdjusted(adjusted);
+        }, consumer);
+    }
+
+
+    /**
+     * Returns intraday OHLC quote bars for the security, keyed by bar start time in epoch milliseconds
+     * @param ticker        the security ticker symbol
+     * @param start         the start date for range
+     * @param end           the end date for range, exclusive
+     * @param interval      the bar interval
+     * @return              the DataFrame contains intraday OHLC bars
+     */
+    public DataFrame<Long,YahooField> getIntradayBars(String ticker, LocalDate start, LocalDate end, YahooIntradaySource.Interval interval) {
+        return DataFrameSource.lookup(YahooIntradaySource.class).read(options -> {
+            options.withTicker(ticker);
+            options.withStartDate(start);
+            options.withEndDate(end);
+            options.withInterval(interval);
+        });
+    }
+
+
     /**
      * Returns the standard set of headers to make us look like a browser
      * @return      the standard set of request headers
@@ -88,43 +88,9 @@ public class YahooFinanceParser {
                 final String token = percentMatcher.group(1);
                 final double number = Double.parseDouble(token);
                 return number / 100d;
-            } else if (dateMatcher1.reset(value).matches()) {
-                final String monthString = dateMatcher1.group(1);
-                final String dateString = dateMatcher1.group(2);
-                final int year = LocalDate.now().getYear();
-                final Integer month = monthMap.get(monthString.toLowerCase());
-                if (month == null) throw new RuntimeException("Unsupported month: " + monthString);
-                return LocalDate.of(year, month, Integer.parseInt(dateString));
-            } else if (dateMatcher2.reset(value).matches()) {
-                final String monthString = dateMatcher2.group(1);
-                final String dateString = dateMatcher2.group(2);
-                final int year = Integer.parseInt(dateMatcher2.group(3));
-                final Integer month = monthMap.get(monthString.toLowerCase());
-                if (month == null) throw new RuntimeException("Unsupported month $monthString");
-                return LocalDate.of(year, month, Integer.parseInt(dateString));
-            } else if (dateMatcher3.reset(value).matches()) {
-                final String monthString = dateMatcher3.group(1);
-                final String dateString = dateMatcher3.group(2);
-                final int year = Integer.parseInt(dateMatcher3.group(3));
-                final int month = Integer.parseInt(monthString);
-                return LocalDate.of(year, month, Integer.parseInt(dateString));
-            } else if (timeMatcher1.reset(value).matches()) {
-                final int hour = Integer.parseInt(timeMatcher1.group(1));
-                final int minutes = Integer.parseInt(timeMatcher1.group(2));
-                final boolean am = timeMatcher1.group(3).equalsIgnoreCase("am");
-                if (am) {
-                    switch (hour) {
-                        case 12:    return LocalTime.of(0, minutes);
-                        default:    return LocalTime.of(hour, minutes);
-                    }
-                } else {
-                    switch (hour) {
-                        case 12:    return LocalTime.of(hour, minutes);
-                        default:    return LocalTime.of(12 + hour, minutes);
-                    }
-                }
             } else {
-                return value;
+                final Object result = parseDateOrTime(value);
+                return result != null ? result : value;
             }
         } catch (Throwable ex) {
             throw new YahooException("Failed to parse value: " + value, ex);
@@ -133,26 +99,208 @@ public class YahooFinanceParser {
 
 
     /**
-     * Returns a double value parsed from the string
+     * Attempts to parse the string as one of the date or time formats used by Yahoo Finance
+     * @param value     the value to parse
+     * @return          the LocalDate or LocalTime, null if the value is not a date or time
+     */
+    private Object parseDateOrTime(String value) {
+        if (dateMatcher1.reset(value).matches()) {
+            final String monthString = dateMatcher1.group(1);
+            final String dateString = dateMatcher1.group(2);
+            final int year = LocalDate.now().getYear();
+            final Integer month = monthMap.get(monthString.toLowerCase());
+            if (month == null) throw new RuntimeException("Unsupported month: " + monthString);
+            return LocalDate.of(year, month, Integer.parseInt(dateString));
+        } else if (dateMatcher2.reset(value).matches()) {
+            final String monthString = dateMatcher2.group(1);
+            final String dateString = dateMatcher2.group(2);
+            final int year = Integer.parseInt(dateMatcher2.group(3));
+            final Integer month = monthMap.get(monthString.toLowerCase());
+            if (month == null) throw new RuntimeException("Unsupported month $monthString");
+            return LocalDate.of(year, month, Integer.parseInt(dateString));
+        } else if (dateMatcher3.reset(value).matches()) {
+            final String monthString = dateMatcher3.group(1);
+            final String dateString = dateMatcher3.group(2);
+            final int year = Integer.parseInt(dateMatcher3.group(3));
+            final int month = Integer.parseInt(monthString);
+            return LocalDate.of(year, month, Integer.parseInt(dateString));
+        } else if (timeMatcher1.reset(value).matches()) {
+            final int hour = Integer.parseInt(timeMatcher1.group(1));
+            final int minutes = Integer.parseInt(timeMatcher1.group(2));
+            final boolean am = timeMatcher1.group(3).equalsIgnoreCase("am");
+            if (am) {
+                switch (hour) {
+                    case 12:    return LocalTime.of(0, minutes);
+                    default:    return LocalTime.of(hour, minutes);
+                }
+            } else {
+                switch (hour) {
+                    case 12:    return LocalTime.of(hour, minutes);
+                    default:    return LocalTime.of(12 + hour, minutes);
+                }
+            }
+        } else {
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns a double value parsed from the string, without boxing for plain, grouped, suffixed and percent numbers
+     * Numbers with at most 15 significant digits are converted exactly in the same way as YahooQuoteDecoder, so the
+     * result is identical to parse(), and anything else falls back to it.
      * @param value     the text value
-     * @return          the double value
+     * @return          the double value, NaN if missing
      */
     public double parseDouble(String value) {
         if (value == null) {
             return Double.NaN;
         } else {
-            value = value.trim();
-            if (value.length() == 0 || value.equalsIgnoreCase("N/A") || value.equalsIgnoreCase("-")) {
+            int start = 0;
+            int end = value.length();
+            while (start < end && value.charAt(start) <= ' ') start++;
+            while (end > start && value.charAt(end-1) <= ' ') end--;
+            if (isMissing(value, start, end)) {
                 return Double.NaN;
             } else {
-                final Object result = parse(value);
-                if (result instanceof Number) {
-                    return ((Number) result).doubleValue();
+                final double result = parseNumber(value, start, end);
+                if (!Double.isNaN(result)) {
+                    return result;
                 } else {
-                    throw new RuntimeException("Failed to parse value into double, returned result: " + value);
+                    final Object parsed = parse(value.substring(start, end));
+                    if (parsed instanceof Number) {
+                        return ((Number)parsed).doubleValue();
+                    } else if (parsed == null) {
+                        return Double.NaN;
+                    } else {
+                        throw new RuntimeException("Failed to parse value into double, returned result: " + value);
+                    }
                 }
             }
         }
     }
 
+
+    /**
+     * Returns a date parsed from the string, without first attempting to parse it as a number
+     * @param value     the text value
+     * @return          the date value, null if missing
+     */
+    public LocalDate parseDate(String value) {
+        if (value == null || isMissing(value, 0, value.length())) {
+            return null;
+        } else {
+            try {
+                final Object result = parseDateOrTime(value.trim());
+                if (result instanceof LocalDate) {
+                    return (LocalDate)result;
+                } else {
+                    throw new YahooException("Failed to parse value into date: " + value);
+                }
+            } catch (YahooException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new YahooException("Failed to parse value into date: " + value, ex);
+            }
+        }
+    }
+
+
+    /**
+     * Returns a time parsed from the string, without first attempting to parse it as a number
+     * @param value     the text value
+     * @return          the time value, null if missing
+     */
+    public LocalTime parseTime(String value) {
+        if (value == null || isMissing(value, 0, value.length())) {
+            return null;
+        } else {
+            try {
+                final Object result = parseDateOrTime(value.trim());
+                if (result instanceof LocalTime) {
+                    return (LocalTime)result;
+                } else {
+                    throw new YahooException("Failed to parse value into time: " + value);
+                }
+            } catch (YahooException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new YahooException("Failed to parse value into time: " + value, ex);
+            }
+        }
+    }
+
+
+    /**
+     * Returns true if the trimmed region of the string represents a missing value
+     * @param value     the text value
+     * @param start     the start index, inclusive
+     * @param end       the end index, exclusive
+     * @return          true if the value is missing
+     */
+    private static boolean isMissing(String value, int start, int end) {
+        final int length = end - start;
+        if (length == 0) {
+            return true;
+        } else if (length == 1) {
+            return value.charAt(start) == '-';
+        } else if (length == 3) {
+            return value.regionMatches(true, start, "N/A", 0, 3) || value.regionMatches(true, start, "NaN", 0, 3);
+        } else {
+            return false;
+        }
+    }
+
+
+    /**
+     * Parses a plain decimal number with optional grouping commas and an optional K, M, B, T or % suffix
+     * @param value     the text value
+     * @param start     the start index, inclusive
+     * @param end       the end index, exclusive
+     * @return          the parsed value, NaN if the value is not a number that can be converted exactly
+     */
+    private static double parseNumber(String value, int start, int end) {
+        double multiplier = 1d;
+        double divisor = 1d;
+        switch (value.charAt(end-1)) {
+            case 'K': case 'k': multiplier = 1000d;             end--;  break;
+            case 'M': case 'm': multiplier = 1000000d;          end--;  break;
+            case 'B': case 'b': multiplier = 1000000000d;       end--;  break;
+            case 'T': case 't': multiplier = 1000000000000d;    end--;  break;
+            case '%':           divisor = 100d;                 end--;  break;
+        }
+        int index = start;
+        if (index < end && value.charAt(index) == '+') index++;
+        final boolean negative = index < end && value.charAt(index) == '-';
+        if (negative) index++;
+        int digits = 0;
+        int scale = 0;
+        int count = 0;
+        long mantissa = 0L;
+        boolean fraction = false;
+        while (index < end) {
+            final char c = value.charAt(index++);
+            if (c >= '0' && c <= '9') {
+                count++;
+                if (digits > 0 || c != '0') digits++;
+                if (fraction) scale++;
+                mantissa = mantissa * 10L + (c - '0');
+                if (digits > YahooQuoteDecoder.MAX_EXACT_DIGITS) {
+                    return Double.NaN;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c != ',' || fraction) {
+                return Double.NaN;
+            }
+        }
+        if (count == 0 || scale >= YahooQuoteDecoder.POWERS_OF_TEN.length) {
+            return Double.NaN;
+        } else {
+            final double number = scale == 0 ? (double)mantissa : (double)mantissa / YahooQuoteDecoder.POWERS_OF_TEN[scale];
+            final double result = negative ? -number : number;
+            return divisor != 1d ? result / divisor : result * multiplier;
+        }
+    }
+
 }
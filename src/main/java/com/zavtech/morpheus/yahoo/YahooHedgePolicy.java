@@ -0,0 +1,392 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.zavtech.morpheus.util.Asserts;
+
+/**
+ * A policy that hedges slow requests by sending a duplicate once a request has run longer than most requests do.
+ *
+ * The policy tracks the latency of recent requests, and if a request has not completed within the configured percentile
+ * of those latencies, a duplicate is started and whichever completes first wins, after which the other is cancelled.
+ * Latency is measured from the start of each request until its result is known, whether it succeeded or failed, so when
+ * a hedge wins the sample is the censored latency of the primary rather than the shorter latency of the hedge.
+ * Each request deposits a fraction of a token into a bounded budget and each hedge spends a whole token, so the extra
+ * upstream traffic is capped at roughly that fraction of requests, even when the upstream is uniformly slow. No hedges
+ * are sent until enough latencies have been observed to estimate the percentile.
+ *
+ * A hedge is an extra request in flight, so when the caller supplies the permits that bound its requests in flight, a
+ * hedge is only sent if a permit is free. Every attempt holds a permit until it actually returns, including a losing
+ * attempt that is still blocked in I/O after the result is known, so hedging never takes the caller above its limit
+ * on requests in flight. Attempts run on a bounded pool of
+ * threads, since a losing attempt blocked in a socket read cannot always be interrupted, and when every thread is busy
+ * the primary runs on the calling thread and no hedge is sent.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooHedgePolicy {
+
+    private static final int SAMPLE_SIZE = 1024;
+    private static final int MIN_SAMPLES = 32;
+    private static final int RECALC_INTERVAL = 32;
+    private static final double MAX_TOKENS = 10d;
+    private static final int DEFAULT_MAX_THREADS = 32;
+
+    private double percentile;
+    private double budget;
+    private long minDelayNanos;
+    private ThreadPoolExecutor executor;
+    private long[] samples = new long[SAMPLE_SIZE];
+    private int sampleCount;
+    private int sampleIndex;
+    private int sinceRecalc;
+    private double tokens;
+    private volatile long thresholdNanos = -1L;
+    private AtomicLong requestCount = new AtomicLong();
+    private AtomicLong hedgeCount = new AtomicLong();
+    private AtomicLong hedgeWinCount = new AtomicLong();
+
+
+    /**
+     * Constructor
+     * @param percentile    the latency percentile after which to hedge, for example 0.95
+     * @param budget        the max fraction of requests that may be hedged, for example 0.05
+     * @param minDelay      the min time to wait before hedging, regardless of observed latencies
+     */
+    public YahooHedgePolicy(double percentile, double budget, Duration minDelay) {
+        this(percentile, budget, minDelay, DEFAULT_MAX_THREADS);
+    }
+
+    /**
+     * Constructor
+     * @param percentile    the latency percentile after which to hedge, for example 0.95
+     * @param budget        the max fraction of requests that may be hedged, for example 0.05
+     * @param minDelay      the min time to wait before hedging, regardless of observed latencies
+     * @param maxThreads    the max number of threads to run primary and hedged attempts on
+     */
+    public YahooHedgePolicy(double percentile, double budget, Duration minDelay, int maxThreads) {
+        Asserts.assertTrue(maxThreads > 0, "The max hedge threads must be > 0");
+        Asserts.assertTrue(percentile > 0d && percentile < 1d, "The hedge percentile must be > 0 and < 1");
+        Asserts.assertTrue(budget >= 0d && budget <= 1d, "The hedge budget must be >= 0 and <= 1");
+        Asserts.assertTrue(minDelay != null && !minDelay.isNegative(), "The min hedge delay must be >= 0");
+        this.percentile = percentile;
+        this.budget = budget;
+        this.minDelayNanos = minDelay.toNanos();
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "YahooHedgePolicy-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Returns the number of requests executed through this policy
+     * @return  the request count
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of hedges sent by this policy
+     * @return  the hedge count
+     */
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    /**
+     * Returns the number of hedges that completed before the request they duplicated
+     * @return  the hedge win count
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    /**
+     * Returns the current delay after which requests are hedged
+     * @return  the hedge delay, empty until enough latencies have been observed
+     */
+    public Optional<Duration> getThreshold() {
+        final long threshold = thresholdNanos;
+        return threshold < 0 ? Optional.empty() : Optional.of(Duration.ofNanos(threshold));
+    }
+
+
+    /**
+     * Executes the task, hedging it with a duplicate if it runs longer than the current threshold and budget allows
+     * The task must be idempotent since it may run twice, and the losing attempt is cancelled with an interrupt.
+     * @param label     the label for the task, used in error messages
+     * @param task      the task to execute
+     * @param <T>       the result type
+     * @return          the result of whichever attempt completed first
+     * @throws YahooException   if all attempts fail, or the calling thread is interrupted
+     */
+    public <T> T execute(String label, Callable<T> task) {
+        return execute(label, null, task);
+    }
+
+
+    /**
+     * Executes the task, hedging it with a duplicate if it runs longer than the current threshold and budget allows
+     * The task must be idempotent since it may run twice, and the losing attempt is cancelled with an interrupt.
+     * When permits are supplied, the caller must already hold a permit for the primary attempt, which is handed over to
+     * the primary and released once it returns, so the caller must not release it. The hedge is skipped if no other
+     * permit is free.
+     * @param label     the label for the task, used in error messages
+     * @param permits   the permits that limit the caller's requests in flight, null for no limit
+     * @param task      the task to execute
+     * @param <T>       the result type
+     * @return          the result of whichever attempt completed first
+     * @throws YahooException   if all attempts fail, or the calling thread is interrupted
+     */
+    public <T> T execute(String label, Semaphore permits, Callable<T> task) {
+        this.requestCount.incrementAndGet();
+        this.deposit();
+        final long start = System.nanoTime();
+        final Request<T> request = new Request<>(task);
+        request.result.whenComplete((value, error) -> {
+            if (!(error instanceof CancellationException)) {
+                this.record(System.nanoTime() - start);
+            }
+        });
+        try {
+            request.start(false, permits);
+            final long threshold = thresholdNanos;
+            if (threshold >= 0) {
+                try {
+                    return request.result.get(threshold, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException ex) {
+                    this.hedge(request, permits);
+                }
+            }
+            return request.result.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)ex.getCause();
+            } else {
+                throw new YahooException("Request failed for " + label, ex.getCause());
+            }
+        } catch (InterruptedException ex) {
+            request.result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new YahooException("Interrupted while waiting for " + label, ex);
+        } finally {
+            request.cancel();
+        }
+    }
+
+
+    /**
+     * Sends a hedge for the request if it is still running, a permit is free and the hedge budget allows
+     * @param request   the request to hedge
+     * @param permits   the permits that limit the caller's requests in flight, null for no limit
+     * @param <T>       the result type
+     */
+    private <T> void hedge(Request<T> request, Semaphore permits) {
+        if (!request.result.isDone() && (permits == null || permits.tryAcquire())) {
+            if (!tryAcquire()) {
+                release(permits);
+            } else if (request.result.isDone()) {
+                this.refund();
+                release(permits);
+            } else if (request.start(true, permits)) {
+                this.hedgeCount.incrementAndGet();
+            } else {
+                this.refund();
+            }
+        }
+    }
+
+
+    /**
+     * Releases a permit held by a hedge
+     * @param permits   the permits that limit the caller's requests in flight, null for no limit
+     */
+    private static void release(Semaphore permits) {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+
+    /**
+     * Adds a fraction of a token to the hedge budget for each request, up to a fixed cap
+     */
+    private synchronized void deposit() {
+        this.tokens = Math.min(MAX_TOKENS, tokens + budget);
+    }
+
+
+    /**
+     * Attempts to spend a token from the hedge budget
+     * @return  true if a token was available
+     */
+    private synchronized boolean tryAcquire() {
+        if (tokens >= 1d) {
+            this.tokens -= 1d;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+
+    /**
+     * Returns a token to the hedge budget when the request completed before its hedge could be sent
+     */
+    private synchronized void refund() {
+        this.tokens = Math.min(MAX_TOKENS, tokens + 1d);
+    }
+
+
+    /**
+     * The primary and any hedged attempts of a single request, which share one result
+     * @param <T>   the result type
+     */
+    private class Request<T> {
+
+        private Callable<T> task;
+        private CompletableFuture<T> result = new CompletableFuture<>();
+        private AtomicInteger attempts = new AtomicInteger();
+        private AtomicInteger failures = new AtomicInteger();
+        private AtomicReference<Throwable> error = new AtomicReference<>();
+        private List<Future<?>> futures = new ArrayList<>(2);
+
+        /**
+         * Constructor
+         * @param task  the task to execute
+         */
+        Request(Callable<T> task) {
+            this.task = task;
+        }
+
+        /**
+         * Starts an attempt of the task, which completes the result if it is the first to succeed
+         * A primary that cannot be started because every thread is busy runs on the calling thread instead, while a
+         * hedge that cannot be started is abandoned, and its permit is released.
+         * @param hedge     true if this attempt is a hedge
+         * @param permits   the permits from which this attempt holds a permit until it returns, null if none
+         * @return          true if the attempt was started
+         */
+        boolean start(boolean hedge, Semaphore permits) {
+            this.attempts.incrementAndGet();
+            final AtomicBoolean started = new AtomicBoolean();
+            final FutureTask<T> future = new FutureTask<T>(() -> {
+                if (started.compareAndSet(false, true)) {
+                    try {
+                        final T value = task.call();
+                        if (result.complete(value) && hedge) {
+                            hedgeWinCount.incrementAndGet();
+                        }
+                    } catch (Throwable t) {
+                        this.fail(t);
+                    } finally {
+                        release(permits);
+                    }
+                }
+                return null;
+            }) {
+                @Override
+                protected void done() {
+                    if (started.compareAndSet(false, true)) {
+                        release(permits);
+                    }
+                }
+            };
+            this.futures.add(future);
+            try {
+                executor.execute(future);
+                return true;
+            } catch (RejectedExecutionException ex) {
+                if (hedge) {
+                    future.cancel(false);
+                    this.fail(null);
+                    return false;
+                } else {
+                    future.run();
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Records a failed attempt, failing the result with the first error once every attempt has failed
+         * @param t     the error raised by the attempt, null if the attempt was abandoned before it started
+         */
+        void fail(Throwable t) {
+            if (t != null) {
+                this.error.compareAndSet(null, t);
+            }
+            if (failures.incrementAndGet() >= attempts.get()) {
+                this.result.completeExceptionally(error.get());
+            }
+        }
+
+        /**
+         * Cancels any attempts still running, interrupting their threads
+         */
+        void cancel() {
+            this.futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+
+    /**
+     * Records the latency of a completed or failed request, and periodically recalculates the hedge threshold
+     * @param latencyNanos  the request latency in nanoseconds
+     */
+    synchronized void record(long latencyNanos) {
+        this.samples[sampleIndex] = latencyNanos;
+        this.sampleIndex = (sampleIndex + 1) % SAMPLE_SIZE;
+        this.sampleCount = Math.min(sampleCount + 1, SAMPLE_SIZE);
+        this.sinceRecalc++;
+        if (sampleCount >= MIN_SAMPLES && sinceRecalc >= RECALC_INTERVAL) {
+            final int count = sampleCount;
+            final long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            final int index = Math.max(0, (int)Math.ceil(percentile * count) - 1);
+            this.thresholdNanos = Math.max(sorted[index], minDelayNanos);
+            this.sinceRecalc = 0;
+        }
+    }
+}
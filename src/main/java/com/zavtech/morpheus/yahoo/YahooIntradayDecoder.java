@@ -0,0 +1,336 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A byte level decoder for the JSON content served by the Yahoo Finance chart API for intraday bars.
+ *
+ * Rather than building a JSON object model, the decoder reads the response into a re-usable byte buffer and scans
+ * it for the timestamp and quote indicator arrays, which are parsed straight into primitive buffers with timestamps
+ * expressed as epoch milliseconds. Bars without a close price are dropped. A decoder is not thread safe, but it can
+ * be re-used for any number of requests on the same thread without allocating per bar.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+class YahooIntradayDecoder {
+
+    private static final byte[] ERROR_KEY = "\"error\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DESCRIPTION_KEY = "\"description\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP_KEY = "\"timestamp\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUOTE_KEY = "\"quote\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OPEN_KEY = "\"open\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HIGH_KEY = "\"high\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LOW_KEY = "\"low\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLOSE_KEY = "\"close\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VOLUME_KEY = "\"volume\":".getBytes(StandardCharsets.US_ASCII);
+
+    private int size;
+    private int length;
+    private long[] timestamps;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private double[] volume;
+    private byte[] content = new byte[1024 * 64];
+
+
+    /**
+     * Constructor
+     * @param capacity  the initial bar capacity of this decoder
+     */
+    YahooIntradayDecoder(int capacity) {
+        this.timestamps = new long[capacity];
+        this.open = new double[capacity];
+        this.high = new double[capacity];
+        this.low = new double[capacity];
+        this.close = new double[capacity];
+        this.volume = new double[capacity];
+    }
+
+    /**
+     * Returns the number of bars captured by the last decode
+     * @return  the number of bars
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the timestamp of the bar at index, expressed in epoch milliseconds
+     * @param index the bar index
+     * @return      the bar timestamp in epoch millis
+     */
+    long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * Returns the open price of the bar at index
+     * @param index the bar index
+     * @return      the open price
+     */
+    double getOpen(int index) {
+        return open[index];
+    }
+
+    /**
+     * Returns the high price of the bar at index
+     * @param index the bar index
+     * @return      the high price
+     */
+    double getHigh(int index) {
+        return high[index];
+    }
+
+    /**
+     * Returns the low price of the bar at index
+     * @param index the bar index
+     * @return      the low price
+     */
+    double getLow(int index) {
+        return low[index];
+    }
+
+    /**
+     * Returns the close price of the bar at index
+     * @param index the bar index
+     * @return      the close price
+     */
+    double getClose(int index) {
+        return close[index];
+    }
+
+    /**
+     * Returns the volume of the bar at index
+     * @param index the bar index
+     * @return      the volume
+     */
+    double getVolume(int index) {
+        return volume[index];
+    }
+
+
+    /**
+     * Decodes all bars from the stream, replacing the content of any previous decode
+     * @param stream    the input stream of Yahoo Finance chart JSON, which is not closed by this method
+     * @return          the number of bars decoded
+     * @throws IOException  if there is an I/O exception reading the stream
+     */
+    int decode(InputStream stream) throws IOException {
+        int read;
+        this.size = 0;
+        this.length = 0;
+        while ((read = stream.read(content, length, content.length - length)) >= 0) {
+            this.length += read;
+            if (length == content.length) {
+                this.content = Arrays.copyOf(content, content.length * 2);
+            }
+        }
+        this.checkError();
+        final int timestampIndex = indexOf(TIMESTAMP_KEY, 0);
+        final int quoteIndex = indexOf(QUOTE_KEY, 0);
+        if (timestampIndex < 0 || quoteIndex < 0) {
+            return size;
+        } else {
+            final int count = parseTimestamps(timestampIndex + TIMESTAMP_KEY.length);
+            this.ensureCapacity(count);
+            this.parseValues(quoteIndex, OPEN_KEY, open, count);
+            this.parseValues(quoteIndex, HIGH_KEY, high, count);
+            this.parseValues(quoteIndex, LOW_KEY, low, count);
+            this.parseValues(quoteIndex, CLOSE_KEY, close, count);
+            this.parseValues(quoteIndex, VOLUME_KEY, volume, count);
+            for (int i=0; i<count; ++i) {
+                if (!Double.isNaN(close[i])) {
+                    this.timestamps[size] = timestamps[i];
+                    this.open[size] = open[i];
+                    this.high[size] = high[i];
+                    this.low[size] = low[i];
+                    this.close[size] = close[i];
+                    this.volume[size] = volume[i];
+                    this.size++;
+                }
+            }
+            return size;
+        }
+    }
+
+
+    /**
+     * Throws an exception if the content includes a non-null error
+     */
+    private void checkError() {
+        final int errorIndex = indexOf(ERROR_KEY, 0);
+        if (errorIndex >= 0) {
+            final int valueIndex = skipWhitespace(errorIndex + ERROR_KEY.length);
+            if (valueIndex < length && content[valueIndex] == '{') {
+                final int descriptionIndex = indexOf(DESCRIPTION_KEY, valueIndex);
+                if (descriptionIndex < 0) {
+                    throw new YahooException("Yahoo Finance chart request failed");
+                } else {
+                    final int start = descriptionIndex + DESCRIPTION_KEY.length;
+                    int end = start;
+                    while (end < length && content[end] != '"') end++;
+                    final String description = new String(content, start, end - start, StandardCharsets.UTF_8);
+                    throw new YahooException("Yahoo Finance chart request failed: " + description);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Parses the array of epoch second timestamps into the timestamp buffer as epoch millis
+     * @param index     the index just after the timestamp key
+     * @return          the number of timestamps parsed
+     */
+    private int parseTimestamps(int index) {
+        int count = 0;
+        index = expect(skipWhitespace(index), '[');
+        while ((index = skipWhitespace(index)) < length) {
+            if (content[index] == ']') {
+                return count;
+            } else {
+                long value = 0L;
+                final boolean negative = content[index] == '-';
+                if (negative) index++;
+                final int start = index;
+                while (index < length && content[index] >= '0' && content[index] <= '9') {
+                    value = value * 10L + (content[index++] - '0');
+                }
+                if (index == start) {
+                    throw new YahooException("Malformed timestamp at " + start + " in Yahoo Finance chart response");
+                }
+                if (count == timestamps.length) {
+                    this.ensureCapacity(count + 1);
+                }
+                this.timestamps[count++] = (negative ? -value : value) * 1000L;
+                index = skipWhitespace(index);
+                if (index < length && content[index] == ',') {
+                    index++;
+                }
+            }
+        }
+        throw new YahooException("Malformed timestamp array in Yahoo Finance chart response");
+    }
+
+
+    /**
+     * Parses an array of numbers or nulls for the key specified into the values buffer
+     * @param from      the index from which to search for key
+     * @param key       the JSON key for array
+     * @param values    the values buffer to populate, which must have sufficient capacity
+     * @param count     the expected number of values
+     */
+    private void parseValues(int from, byte[] key, double[] values, int count) {
+        final int keyIndex = indexOf(key, from);
+        if (keyIndex < 0) {
+            Arrays.fill(values, 0, count, Double.NaN);
+        } else {
+            int n = 0;
+            int index = expect(skipWhitespace(keyIndex + key.length), '[');
+            while (index < length && content[index] != ']') {
+                index = skipWhitespace(index);
+                int end = index;
+                while (end < length && content[end] != ',' && content[end] != ']') end++;
+                if (n >= count) {
+                    throw new YahooException("Yahoo Finance chart response has more values than timestamps for " + new String(key, StandardCharsets.US_ASCII));
+                } else if (end > index) {
+                    values[n++] = YahooQuoteDecoder.parseDouble(content, index, end);
+                }
+                index = end < length && content[end] == ',' ? end + 1 : end;
+            }
+            if (n != count) {
+                throw new YahooException("Yahoo Finance chart response has " + n + " values but " + count + " timestamps for " + new String(key, StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+
+    /**
+     * Returns the index of the first occurrence of the key at or after the index specified
+     * @param key       the key bytes to find
+     * @param from      the index to search from
+     * @return          the index of key, -1 if not found
+     */
+    private int indexOf(byte[] key, int from) {
+        final int last = length - key.length;
+        final byte first = key[0];
+        for (int i=from; i<=last; ++i) {
+            if (content[i] == first) {
+                int j = 1;
+                while (j < key.length && content[i + j] == key[j]) j++;
+                if (j == key.length) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Returns the index of the first non whitespace byte at or after the index specified
+     * @param index     the index to start from
+     * @return          the index of first non whitespace byte
+     */
+    private int skipWhitespace(int index) {
+        while (index < length && (content[index] == ' ' || content[index] == '\n' || content[index] == '\r' || content[index] == '\t')) {
+            index++;
+        }
+        return index;
+    }
+
+
+    /**
+     * Returns the index after the expected byte, or throws an exception if the byte at index does not match
+     * @param index     the index to check
+     * @param expected  the expected byte
+     * @return          the index of the next byte
+     */
+    private int expect(int index, char expected) {
+        if (index < length && content[index] == expected) {
+            return index + 1;
+        } else {
+            throw new YahooException("Malformed Yahoo Finance chart response, expected " + expected + " at " + index);
+        }
+    }
+
+
+    /**
+     * Ensures the primitive buffers can hold at least the number of bars specified
+     * @param capacity  the required capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > timestamps.length) {
+            final int newCapacity = Math.max(capacity, timestamps.length + (timestamps.length >> 1) + 16);
+            this.timestamps = Arrays.copyOf(timestamps, newCapacity);
+            this.open = Arrays.copyOf(open, newCapacity);
+            this.high = Arrays.copyOf(high, newCapacity);
+            this.low = Arrays.copyOf(low, newCapacity);
+            this.close = Arrays.copyOf(close, newCapacity);
+            this.volume = Arrays.copyOf(volume, newCapacity);
+        }
+    }
+
+}
@@ -0,0 +1,301 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import com.zavtech.morpheus.array.Array;
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.frame.DataFrameException;
+import com.zavtech.morpheus.frame.DataFrameSource;
+import com.zavtech.morpheus.index.Index;
+import com.zavtech.morpheus.util.Asserts;
+import com.zavtech.morpheus.util.IO;
+import com.zavtech.morpheus.util.http.HttpClient;
+import com.zavtech.morpheus.util.http.HttpException;
+
+/**
+ * A DataFrameSource implementation that loads intraday bars from Yahoo Finance using their chart API.
+ *
+ * The resulting DataFrame is keyed by bar start time expressed as epoch milliseconds, so the row axis is backed by
+ * a primitive long array rather than boxed date-time keys, which keeps large intraday histories compact in memory.
+ * Yahoo Finance only serves 1 minute bars for roughly the last 30 days, and other intervals for the last 60 days.
+ *
+ * Any use of the extracted data from this software should adhere to Yahoo Finance Terms and Conditions.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooIntradaySource extends DataFrameSource<Long,YahooField,YahooIntradaySource.Options> {
+
+    private static final String CHART_URL = "https://query1.finance.yahoo.com/v8/finance/chart/%s?period1=%d&period2=%d&interval=%s&includePrePost=%s&crumb=%s";
+
+    private static Array<YahooField> fields = Array.of(
+        YahooField.PX_OPEN,
+        YahooField.PX_HIGH,
+        YahooField.PX_LOW,
+        YahooField.PX_CLOSE,
+        YahooField.PX_VOLUME,
+        YahooField.PX_CHANGE,
+        YahooField.PX_CHANGE_PERCENT
+    );
+
+    private static final YahooObjectPool<YahooIntradayDecoder> decoders = new YahooObjectPool<>(32, () -> new YahooIntradayDecoder(1024));
+
+    private Duration connectTimeout;
+    private Duration readTimeout;
+    private YahooSession session;
+
+
+    /**
+     * The supported intraday bar intervals
+     */
+    public enum Interval {
+
+        ONE_MINUTE("1m"),
+        FIVE_MINUTES("5m"),
+        FIFTEEN_MINUTES("15m"),
+        SIXTY_MINUTES("60m");
+
+        private String code;
+
+        /**
+         * Constructor
+         * @param code  the Yahoo Finance code for interval
+         */
+        Interval(String code) {
+            this.code = code;
+        }
+
+        /**
+         * Returns the Yahoo Finance code for this interval
+         * @return  the interval code
+         */
+        public String getCode() {
+            return code;
+        }
+    }
+
+
+    /**
+     * Constructor
+     */
+    public YahooIntradaySource() {
+        this(Duration.ofMillis(5000), Duration.ofMillis(15000));
+    }
+
+    /**
+     * Constructor
+     * @param connectTimeout    the http connect timeout
+     * @param readTimeout       the http read timeout
+     */
+    public YahooIntradaySource(Duration connectTimeout, Duration readTimeout) {
+        this(connectTimeout, readTimeout, YahooSession.getDefault());
+    }
+
+    /**
+     * Constructor
+     * @param connectTimeout    the http connect timeout
+     * @param readTimeout       the http read timeout
+     * @param session           the session that holds the cookies and crumb for requests
+     */
+    public YahooIntradaySource(Duration connectTimeout, Duration readTimeout, YahooSession session) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.session = session;
+    }
+
+
+    @Override
+    public DataFrame<Long,YahooField> read(Consumer<Options> configurator) throws DataFrameException {
+        final Options options = initOptions(new Options(), configurator);
+        try {
+            return session.execute(credentials -> {
+                final URL url = createURL(options, credentials.getCrumb());
+                IO.println("Calling " + url);
+                return HttpClient.getDefault().<DataFrame<Long,YahooField>>doGet(httpRequest -> {
+                    httpRequest.setUrl(url);
+                    httpRequest.setRetryCount(2);
+                    httpRequest.setReadTimeout((int)readTimeout.getSeconds() * 1000);
+                    httpRequest.setConnectTimeout((int)connectTimeout.getSeconds() * 1000);
+                    httpRequest.getCookies().putAll(credentials.getCookies());
+                    httpRequest.setResponseHandler(response -> {
+                        final int code = response.getStatus().getCode();
+                        if (YahooSession.isExpired(code)) {
+                            throw new YahooSession.ExpiredException("Yahoo Finance rejected session with status code " + code);
+                        } else if (code != 200) {
+                            throw new HttpException(httpRequest, "Yahoo Finance responded with status code " + code, null);
+                        } else {
+                            final YahooIntradayDecoder decoder = decoders.borrow();
+                            try {
+                                decoder.decode(response.getStream());
+                                return Optional.of(createFrame(decoder));
+                            } finally {
+                                decoders.release(decoder);
+                            }
+                        }
+                    });
+                }).orElseGet(() -> {
+                    throw new RuntimeException("Failed to load intraday bars from URL: " + url);
+                });
+            });
+        } catch (Exception ex) {
+            throw new DataFrameException("Intraday query failed for asset " + options.ticker, ex);
+        }
+    }
+
+
+    /**
+     * Returns a newly created DataFrame of intraday bars, built in a single step from exactly sized primitive columns
+     * @param decoder   the decoder holding the intraday bars
+     * @return          the DataFrame of intraday bars keyed by epoch millis
+     */
+    static DataFrame<Long,YahooField> createFrame(YahooIntradayDecoder decoder) {
+        final int size = decoder.size();
+        final long[] timestamps = new long[size];
+        final double[][] data = new double[fields.length()][size];
+        for (int i=0; i<size; ++i) {
+            timestamps[i] = decoder.getTimestamp(i);
+            data[0][i] = decoder.getOpen(i);
+            data[1][i] = decoder.getHigh(i);
+            data[2][i] = decoder.getLow(i);
+            data[3][i] = decoder.getClose(i);
+            data[4][i] = decoder.getVolume(i);
+            if (i == 0) {
+                data[5][i] = Double.NaN;
+                data[6][i] = Double.NaN;
+            } else {
+                data[5][i] = data[3][i] - data[3][i-1];
+                data[6][i] = (data[3][i] / data[3][i-1]) - 1d;
+            }
+        }
+        return DataFrame.of(Index.of(Array.of(timestamps)), YahooField.class, columns -> {
+            for (int j=0; j<data.length; ++j) {
+                columns.add(fields.getValue(j), Array.of(data[j]));
+            }
+        });
+    }
+
+
+    /**
+     * Called internally to construct the chart query URL
+     * @param options   the request options
+     * @param crumb     the crumb token for the session
+     * @return          the query url
+     */
+    private URL createURL(Options options, String crumb) {
+        try {
+            final long start = options.startDate.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+            final long end = options.endDate.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+            final String interval = options.interval.getCode();
+            return new URL(String.format(CHART_URL, options.ticker, start, end, interval, options.prePost, crumb));
+        } catch (MalformedURLException ex) {
+            throw new YahooException("Failed to create chart URL for " + options.ticker, ex);
+        }
+    }
+
+
+    /**
+     * The options for this source
+     */
+    public class Options implements DataFrameSource.Options<Long,YahooField> {
+
+        private String ticker;
+        private LocalDate startDate;
+        private LocalDate endDate = LocalDate.now().plusDays(1);
+        private Interval interval = Interval.FIVE_MINUTES;
+        private boolean prePost;
+
+        @Override
+        public void validate() {
+            Asserts.assertTrue(ticker != null, "The ticker cannot be null");
+            Asserts.assertTrue(startDate != null, "The start date cannot be null");
+            Asserts.assertTrue(endDate != null, "The end date cannot be null");
+            Asserts.assertTrue(interval != null, "The interval cannot be null");
+            Asserts.assertTrue(startDate.isBefore(endDate), "The start date must be < end date");
+        }
+
+        /**
+         * Sets the ticker for these options
+         * @param ticker    the ticker reference
+         * @return          these options
+         */
+        public Options withTicker(String ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * Sets the start date for these options
+         * @param startDate the start date
+         * @return          these options
+         */
+        public Options withStartDate(LocalDate startDate) {
+            this.startDate = startDate;
+            return this;
+        }
+
+        /**
+         * Sets the end date for these options, exclusive
+         * @param endDate   the end date
+         * @return          these options
+         */
+        public Options withEndDate(LocalDate endDate) {
+            this.endDate = endDate;
+            return this;
+        }
+
+        /**
+         * Sets the bar interval for these options
+         * @param interval  the bar interval
+         * @return          these options
+         */
+        public Options withInterval(Interval interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * Sets whether to include pre and post market bars
+         * @param prePost   true to include pre and post market bars
+         * @return          these options
+         */
+        public Options withPrePost(boolean prePost) {
+            this.prePost = prePost;
+            return this;
+        }
+    }
+
+
+    public static void main(String[] args) {
+        final YahooIntradaySource source = new YahooIntradaySource();
+        final DataFrame<Long,YahooField> frame = source.read(options -> {
+            options.withTicker("AAPL");
+            options.withStartDate(LocalDate.now().minusDays(5));
+            options.withInterval(Interval.ONE_MINUTE);
+        });
+        frame.rows().firstKey().ifPresent(key -> IO.println("First bar at " + Instant.ofEpochMilli(key)));
+        frame.out().print();
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of reusable objects such as response decoders, which are borrowed for the duration of a request and
+ * then returned so that their internal buffers can be reused by whichever thread makes the next request.
+ *
+ * Unlike a ThreadLocal, the pool retains no more objects than the peak number of concurrent borrowers, and objects are
+ * still reused when requests run on short lived threads such as per-call executors or virtual threads. Objects that are
+ * returned while the pool is full are simply dropped for the garbage collector.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+class YahooObjectPool<T> {
+
+    private int capacity;
+    private Supplier<T> factory;
+    private AtomicInteger size = new AtomicInteger();
+    private Queue<T> queue = new ConcurrentLinkedQueue<>();
+
+
+    /**
+     * Constructor
+     * @param capacity  the max number of idle objects retained by the pool
+     * @param factory   the factory to create objects when the pool is empty
+     */
+    YahooObjectPool(int capacity, Supplier<T> factory) {
+        this.capacity = capacity;
+        this.factory = factory;
+    }
+
+
+    /**
+     * Returns the number of idle objects currently held by this pool
+     * @return  the number of idle objects
+     */
+    int size() {
+        return size.get();
+    }
+
+
+    /**
+     * Returns an idle object from this pool, or a newly created object if the pool is empty
+     * @return  the borrowed object, which should be returned via release()
+     */
+    T borrow() {
+        final T value = queue.poll();
+        if (value == null) {
+            return factory.get();
+        } else {
+            size.decrementAndGet();
+            return value;
+        }
+    }
+
+
+    /**
+     * Returns a borrowed object to this pool, dropping it if the pool is already at capacity
+     * @param value     the object to return, which must no longer be used by the caller
+     */
+    void release(T value) {
+        if (value != null && size.incrementAndGet() <= capacity) {
+            queue.offer(value);
+        } else if (value != null) {
+            size.decrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,321 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.util.Arrays;
+
+/**
+ * A growable series of daily bars held in primitive columns, sorted by date in ascending order.
+ *
+ * Bars hold unadjusted prices along with the split ratio derived from the close and adjusted close,
+ * so that dividend adjusted prices can be computed on demand by multiplying through by the ratio.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+class YahooQuoteBars {
+
+    private int size;
+    private int[] dates;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private double[] volume;
+    private double[] splitRatio;
+
+
+    /**
+     * Constructor
+     * @param capacity  the initial capacity
+     */
+    YahooQuoteBars(int capacity) {
+        this.dates = new int[capacity];
+        this.open = new double[capacity];
+        this.high = new double[capacity];
+        this.low = new double[capacity];
+        this.close = new double[capacity];
+        this.volume = new double[capacity];
+        this.splitRatio = new double[capacity];
+    }
+
+
+    /**
+     * Constructor
+     * @param size          the number of bars
+     * @param dates         the bar dates in epoch days
+     * @param open          the open prices
+     * @param high          the high prices
+     * @param low           the low prices
+     * @param close         the close prices
+     * @param volume        the volumes
+     * @param splitRatio    the split ratios
+     */
+    YahooQuoteBars(int size, int[] dates, double[] open, double[] high, double[] low, double[] close, double[] volume, double[] splitRatio) {
+        this.size = size;
+        this.dates = dates;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.splitRatio = splitRatio;
+    }
+
+
+    /**
+     * Returns a newly created series of bars from the content of a decoder
+     * @param decoder   the decoder holding the raw Yahoo Finance bars
+     * @return          the newly created bars, sorted by date
+     */
+    static YahooQuoteBars of(YahooQuoteDecoder decoder) {
+        final int count = decoder.size();
+        final YahooQuoteBars bars = new YahooQuoteBars(count);
+        for (int i=0; i<count; ++i) {
+            final double close = decoder.getClose(i);
+            final double closeAdj = decoder.getCloseAdj(i);
+            final double splitRatio = Math.abs(closeAdj - close) > 0.00001d ? closeAdj / close : 1d;
+            bars.add(
+                decoder.getDate(i),
+                decoder.getOpen(i),
+                decoder.getHigh(i),
+                decoder.getLow(i),
+                close,
+                decoder.getVolume(i),
+                splitRatio
+            );
+        }
+        return bars.sort();
+    }
+
+
+    /**
+     * Returns the number of bars in this series
+     * @return  the number of bars
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the date of the bar at index, expressed in epoch days
+     * @param index the bar index
+     * @return      the bar date in epoch days
+     */
+    int getDate(int index) {
+        return dates[index];
+    }
+
+    /**
+     * Returns the open price of the bar at index
+     * @param index the bar index
+     * @return      the open price
+     */
+    double getOpen(int index) {
+        return open[index];
+    }
+
+    /**
+     * Returns the high price of the bar at index
+     * @param index the bar index
+     * @return      the high price
+     */
+    double getHigh(int index) {
+        return high[index];
+    }
+
+    /**
+     * Returns the low price of the bar at index
+     * @param index the bar index
+     * @return      the low price
+     */
+    double getLow(int index) {
+        return low[index];
+    }
+
+    /**
+     * Returns the close price of the bar at index
+     * @param index the bar index
+     * @return      the close price
+     */
+    double getClose(int index) {
+        return close[index];
+    }
+
+    /**
+     * Returns the volume of the bar at index
+     * @param index the bar index
+     * @return      the volume
+     */
+    double getVolume(int index) {
+        return volume[index];
+    }
+
+    /**
+     * Returns the split ratio of the bar at index
+     * @param index the bar index
+     * @return      the split ratio
+     */
+    double getSplitRatio(int index) {
+        return splitRatio[index];
+    }
+
+
+    /**
+     * Appends a bar to the end of this series
+     * @param date          the date in epoch days
+     * @param open          the open price
+     * @param high          the high price
+     * @param low           the low price
+     * @param close         the close price
+     * @param volume        the volume
+     * @param splitRatio    the split ratio
+     */
+    void add(int date, double open, double high, double low, double close, double volume, double splitRatio) {
+        if (size == dates.length) {
+            final int capacity = size + (size >> 1) + 16;
+            this.dates = Arrays.copyOf(dates, capacity);
+            this.open = Arrays.copyOf(this.open, capacity);
+            this.high = Arrays.copyOf(this.high, capacity);
+            this.low = Arrays.copyOf(this.low, capacity);
+            this.close = Arrays.copyOf(this.close, capacity);
+            this.volume = Arrays.copyOf(this.volume, capacity);
+            this.splitRatio = Arrays.copyOf(this.splitRatio, capacity);
+        }
+        this.dates[size] = date;
+        this.open[size] = open;
+        this.high[size] = high;
+        this.low[size] = low;
+        this.close[size] = close;
+        this.volume[size] = volume;
+        this.splitRatio[size] = splitRatio;
+        this.size++;
+    }
+
+
+    /**
+     * Appends the bar at index in another series to the end of this series
+     * @param other     the other series
+     * @param index     the index of bar in other series
+     */
+    private void add(YahooQuoteBars other, int index) {
+        this.add(
+            other.dates[index],
+            other.open[index],
+            other.high[index],
+            other.low[index],
+            other.close[index],
+            other.volume[index],
+            other.splitRatio[index]
+        );
+    }
+
+
+    /**
+     * Sorts this series by date if not already sorted, keeping the last bar for any duplicate dates
+     * @return  this series
+     */
+    YahooQuoteBars sort() {
+        boolean sorted = true;
+        for (int i=1; i<size && sorted; ++i) {
+            sorted = dates[i-1] < dates[i];
+        }
+        if (!sorted) {
+            final long[] keys = new long[size];
+            for (int i=0; i<size; ++i) {
+                keys[i] = ((long)dates[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            final YahooQuoteBars copy = new YahooQuoteBars(size);
+            for (int i=0; i<size; ++i) {
+                final int index = (int)keys[i];
+                final boolean last = i == size - 1 || (int)(keys[i+1] >> 32) != dates[index];
+                if (last) {
+                    copy.add(this, index);
+                }
+            }
+            this.size = copy.size;
+            this.dates = copy.dates;
+            this.open = copy.open;
+            this.high = copy.high;
+            this.low = copy.low;
+            this.close = copy.close;
+            this.volume = copy.volume;
+            this.splitRatio = copy.splitRatio;
+        }
+        return this;
+    }
+
+
+    /**
+     * Returns the index of the first bar with a date >= the date specified
+     * @param date  the date in epoch days
+     * @return      the index of first bar on or after date, or size if none
+     */
+    int ceiling(int date) {
+        final int index = Arrays.binarySearch(dates, 0, size, date);
+        return index >= 0 ? index : -index - 1;
+    }
+
+
+    /**
+     * Returns the bars with dates that fall within the inclusive range specified
+     * @param start     the start date in epoch days, inclusive
+     * @param end       the end date in epoch days, inclusive
+     * @return          the bars within range, which may be this series if all bars are in range
+     */
+    YahooQuoteBars range(int start, int end) {
+        final int from = ceiling(start);
+        final int to = ceiling(end + 1);
+        if (from == 0 && to == size) {
+            return this;
+        } else {
+            final YahooQuoteBars result = new YahooQuoteBars(Math.max(0, to - from));
+            for (int i=from; i<to; ++i) {
+                result.add(this, i);
+            }
+            return result;
+        }
+    }
+
+
+    /**
+     * Returns a new series that merges this series with another, with bars in the other series taking precedence
+     * @param other     the other series of bars
+     * @return          the merged series of bars
+     */
+    YahooQuoteBars merge(YahooQuoteBars other) {
+        int i = 0, j = 0;
+        final YahooQuoteBars result = new YahooQuoteBars(size + other.size);
+        while (i < size || j < other.size) {
+            if (j == other.size) {
+                result.add(this, i++);
+            } else if (i == size) {
+                result.add(other, j++);
+            } else if (dates[i] < other.dates[j]) {
+                result.add(this, i++);
+            } else if (dates[i] > other.dates[j]) {
+                result.add(other, j++);
+            } else {
+                result.add(other, j++);
+                i++;
+            }
+        }
+        return result;
+    }
+
+}
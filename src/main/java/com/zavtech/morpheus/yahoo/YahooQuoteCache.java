@@ -0,0 +1,217 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+import com.zavtech.morpheus.util.IO;
+
+/**
+ * A persistent on-disk cache of daily bars keyed by ticker, which allows the YahooQuoteHistorySource to only download
+ * the head or tail date ranges that are missing locally. Bars are held in a YahooQuoteStore with unadjusted prices and
+ * split ratios, so the same cached bars serve both dividend adjusted and unadjusted requests.
+ *
+ * Dividend adjusted prices are restated by Yahoo Finance every time a new dividend is paid, so each incremental download
+ * overlaps the cached bars by one day, and if the split ratio of the overlapping bar has changed the entire range is
+ * downloaded again rather than merging bars expressed on a different adjustment basis.
+ *
+ * The cache can be enabled for the default YahooQuoteHistorySource by setting the morpheus.yahoo.cache system property
+ * to the directory in which the bars should be stored.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooQuoteCache {
+
+    private static final String CACHE_DIR_PROPERTY = "morpheus.yahoo.cache";
+
+    private YahooQuoteStore store;
+    private ConcurrentHashMap<String,ReentrantLock> lockMap = new ConcurrentHashMap<>();
+
+
+    /**
+     * Constructor
+     * @param directory the directory in which to store the cached bars
+     */
+    public YahooQuoteCache(File directory) {
+        this(new YahooQuoteStore(directory));
+    }
+
+
+    /**
+     * Constructor
+     * @param store the store in which to hold cached bars
+     */
+    public YahooQuoteCache(YahooQuoteStore store) {
+        this.store = store;
+    }
+
+
+    /**
+     * Returns the cache configured via the morpheus.yahoo.cache system property, if any
+     * @return  the optional default cache
+     */
+    public static Optional<YahooQuoteCache> getDefault() {
+        final String path = System.getProperty(CACHE_DIR_PROPERTY);
+        if (path == null || path.trim().length() == 0) {
+            return Optional.empty();
+        } else {
+            return Optional.of(new YahooQuoteCache(new File(path.trim())));
+        }
+    }
+
+
+    /**
+     * Returns the store that holds the bars for this cache
+     * @return  the quote store
+     */
+    public YahooQuoteStore getStore() {
+        return store;
+    }
+
+
+    /**
+     * Removes any cached bars for the ticker specified
+     * @param ticker    the security ticker
+     */
+    public void evict(String ticker) {
+        final ReentrantLock lock = getLock(ticker);
+        lock.lock();
+        try {
+            store.delete(ticker);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Returns bars for the date range, loading only the date ranges that are not already cached
+     * @param ticker    the security ticker
+     * @param start     the start date for range
+     * @param end       the end date for range
+     * @param loader    the function to download bars for a start and end date
+     * @return          the bars for the date range requested
+     */
+    YahooQuoteBars read(String ticker, LocalDate start, LocalDate end, BiFunction<LocalDate,LocalDate,YahooQuoteBars> loader) {
+        final ReentrantLock lock = getLock(ticker);
+        lock.lock();
+        try {
+            final LocalDate yesterday = LocalDate.now().minusDays(1);
+            final YahooQuoteStore.Header header = store.readHeader(ticker);
+            if (header == null || header.getCount() == 0) {
+                final YahooQuoteBars bars = loader.apply(start, end);
+                store.write(ticker, start, min(end, yesterday), bars);
+                return bars;
+            } else if (!start.isBefore(header.getStart()) && !end.isAfter(header.getEnd())) {
+                return store.read(ticker, start, end);
+            } else {
+                boolean rebased = false;
+                YahooQuoteBars bars = store.read(ticker, min(start, header.getStart()), max(end, header.getEnd()));
+                if (start.isBefore(header.getStart())) {
+                    final int seamDate = bars.getDate(0);
+                    final YahooQuoteBars head = loader.apply(start, LocalDate.ofEpochDay(seamDate + 1));
+                    rebased = isRebased(bars, head, seamDate);
+                    if (!rebased) {
+                        bars = bars.merge(head);
+                        store.write(ticker, start, header.getEnd(), bars);
+                    }
+                }
+                if (!rebased && end.isAfter(header.getEnd())) {
+                    final int seamDate = bars.getDate(bars.size() - 1);
+                    final LocalDate seam = LocalDate.ofEpochDay(seamDate);
+                    final YahooQuoteBars tail = loader.apply(seam, end);
+                    rebased = isRebased(bars, tail, seamDate);
+                    if (!rebased) {
+                        bars = bars.merge(tail);
+                        try (YahooQuoteStore.Writer writer = store.writer(ticker)) {
+                            writer.append(tail, seam, min(end, yesterday));
+                        }
+                    }
+                }
+                if (rebased) {
+                    IO.println("Adjustment basis changed for " + ticker + ", reloading all cached bars");
+                    final LocalDate reloadStart = min(start, header.getStart());
+                    final LocalDate reloadEnd = max(end, header.getEnd());
+                    bars = loader.apply(reloadStart, reloadEnd);
+                    store.write(ticker, reloadStart, min(reloadEnd, yesterday), bars);
+                }
+                return bars.range((int)start.toEpochDay(), (int)end.toEpochDay());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Returns the earlier of two dates
+     * @param date1     the first date
+     * @param date2     the second date
+     * @return          the earlier date
+     */
+    private static LocalDate min(LocalDate date1, LocalDate date2) {
+        return date1.isBefore(date2) ? date1 : date2;
+    }
+
+
+    /**
+     * Returns the later of two dates
+     * @param date1     the first date
+     * @param date2     the second date
+     * @return          the later date
+     */
+    private static LocalDate max(LocalDate date1, LocalDate date2) {
+        return date1.isAfter(date2) ? date1 : date2;
+    }
+
+
+    /**
+     * Returns true if the split ratio of the bar on the seam date differs between the cached and downloaded bars
+     * @param cached        the cached bars
+     * @param loaded        the newly downloaded bars
+     * @param seamDate      the date on which both series overlap in epoch days
+     * @return              true if the adjustment basis has changed since the bars were cached
+     */
+    private boolean isRebased(YahooQuoteBars cached, YahooQuoteBars loaded, int seamDate) {
+        final int i = cached.ceiling(seamDate);
+        final int j = loaded.ceiling(seamDate);
+        if (i >= cached.size() || j >= loaded.size() || cached.getDate(i) != seamDate || loaded.getDate(j) != seamDate) {
+            return false;
+        } else {
+            final double cachedRatio = cached.getSplitRatio(i);
+            final double loadedRatio = loaded.getSplitRatio(j);
+            return Math.abs(cachedRatio - loadedRatio) > 0.000001d * Math.abs(loadedRatio);
+        }
+    }
+
+
+    /**
+     * Returns the lock for the ticker
+     * @param ticker    the security ticker
+     * @return          the lock for the ticker
+     */
+    private ReentrantLock getLock(String ticker) {
+        return lockMap.computeIfAbsent(ticker.toUpperCase(), key -> new ReentrantLock());
+    }
+
+}
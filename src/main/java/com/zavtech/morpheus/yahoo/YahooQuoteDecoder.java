@@ -0,0 +1,394 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A byte level decoder for the daily bar CSV content served by the Yahoo Finance history download API.
+ *
+ * The decoder reads the raw response stream straight into growable primitive buffers, with dates captured
+ * as epoch days and prices as doubles, so that no Strings or arrays are allocated per line. A decoder is
+ * not thread safe, but it can be re-used for any number of requests on the same thread.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+class YahooQuoteDecoder {
+
+    static final int COLUMN_OPEN = 1;
+    static final int COLUMN_HIGH = 2;
+    static final int COLUMN_LOW = 4;
+    static final int COLUMN_VOLUME = 8;
+    static final int COLUMN_ALL = COLUMN_OPEN | COLUMN_HIGH | COLUMN_LOW | COLUMN_VOLUME;
+
+    static final int MAX_EXACT_DIGITS = 15;
+    static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private int size;
+    private int columns;
+    private int[] dates;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private double[] closeAdj;
+    private double[] volume;
+    private byte[] line = new byte[256];
+    private byte[] buffer = new byte[1024 * 64];
+
+
+    /**
+     * Constructor
+     * @param capacity  the initial bar capacity of this decoder
+     */
+    YahooQuoteDecoder(int capacity) {
+        this.dates = new int[capacity];
+        this.open = new double[capacity];
+        this.high = new double[capacity];
+        this.low = new double[capacity];
+        this.close = new double[capacity];
+        this.closeAdj = new double[capacity];
+        this.volume = new double[capacity];
+    }
+
+    /**
+     * Returns the number of bars captured by the last decode
+     * @return  the number of bars
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the date of the bar at the index, expressed as epoch days
+     * @param index the bar index
+     * @return      the bar date in epoch days
+     */
+    int getDate(int index) {
+        return dates[index];
+    }
+
+    /**
+     * Returns the open price for the bar at the index
+     * @param index the bar index
+     * @return      the open price
+     */
+    double getOpen(int index) {
+        return open[index];
+    }
+
+    /**
+     * Returns the high price for the bar at the index
+     * @param index the bar index
+     * @return      the high price
+     */
+    double getHigh(int index) {
+        return high[index];
+    }
+
+    /**
+     * Returns the low price for the bar at the index
+     * @param index the bar index
+     * @return      the low price
+     */
+    double getLow(int index) {
+        return low[index];
+    }
+
+    /**
+     * Returns the close price for the bar at the index
+     * @param index the bar index
+     * @return      the close price
+     */
+    double getClose(int index) {
+        return close[index];
+    }
+
+    /**
+     * Returns the dividend adjusted close price for the bar at the index
+     * @param index the bar index
+     * @return      the adjusted close price
+     */
+    double getCloseAdj(int index) {
+        return closeAdj[index];
+    }
+
+    /**
+     * Returns the volume for the bar at the index
+     * @param index the bar index
+     * @return      the volume
+     */
+    double getVolume(int index) {
+        return volume[index];
+    }
+
+
+    /**
+     * Decodes all bars from the stream, replacing the content of any previous decode
+     * @param stream    the input stream of Yahoo Finance CSV content, which is not closed by this method
+     * @return          the number of bars decoded
+     * @throws IOException  if there is an I/O exception reading the stream
+     */
+    int decode(InputStream stream) throws IOException {
+        return decode(stream, COLUMN_ALL);
+    }
+
+
+    /**
+     * Decodes all bars from the stream, only parsing the optional columns specified
+     * The date, close and adjusted close are always decoded, while optional columns that are not selected are set to NaN.
+     * @param stream    the input stream of Yahoo Finance CSV content, which is not closed by this method
+     * @param columns   the bit mask of optional COLUMN_XXX constants to decode
+     * @return          the number of bars decoded
+     * @throws IOException  if there is an I/O exception reading the stream
+     */
+    int decode(InputStream stream, int columns) throws IOException {
+        int read;
+        int length = 0;
+        this.size = 0;
+        this.columns = columns;
+        while ((read = stream.read(buffer)) > 0) {
+            for (int i=0; i<read; ++i) {
+                final byte value = buffer[i];
+                if (value == '\n') {
+                    this.decodeLine(line, length);
+                    length = 0;
+                } else if (value != '\r') {
+                    if (length == line.length) {
+                        this.line = Arrays.copyOf(line, length * 2);
+                    }
+                    line[length++] = value;
+                }
+            }
+        }
+        if (length > 0) {
+            this.decodeLine(line, length);
+        }
+        return size;
+    }
+
+
+    /**
+     * Decodes a single line of Date,Open,High,Low,Close,Adj Close,Volume values
+     * @param bytes     the line bytes
+     * @param length    the length of the line
+     */
+    private void decodeLine(byte[] bytes, int length) {
+        if (length > 0 && isDigit(bytes[0])) {
+            try {
+                this.ensureCapacity(size + 1);
+                int start = 0;
+                int end = indexOf(bytes, start, length);
+                this.dates[size] = parseDate(bytes, start, end);
+                end = indexOf(bytes, start = end + 1, length);
+                this.open[size] = (columns & COLUMN_OPEN) != 0 ? parseDouble(bytes, start, end) : Double.NaN;
+                end = indexOf(bytes, start = end + 1, length);
+                this.high[size] = (columns & COLUMN_HIGH) != 0 ? parseDouble(bytes, start, end) : Double.NaN;
+                end = indexOf(bytes, start = end + 1, length);
+                this.low[size] = (columns & COLUMN_LOW) != 0 ? parseDouble(bytes, start, end) : Double.NaN;
+                end = indexOf(bytes, start = end + 1, length);
+                this.close[size] = parseDouble(bytes, start, end);
+                end = indexOf(bytes, start = end + 1, length);
+                this.closeAdj[size] = parseDouble(bytes, start, end);
+                end = indexOf(bytes, start = end + 1, length);
+                this.volume[size] = (columns & COLUMN_VOLUME) != 0 ? parseDouble(bytes, start, end) : Double.NaN;
+                this.size++;
+            } catch (YahooException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new YahooException("Failed to decode quote line: " + new String(bytes, 0, length), ex);
+            }
+        }
+    }
+
+
+    /**
+     * Ensures the primitive buffers can hold at least the number of bars specified
+     * @param capacity  the required capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > dates.length) {
+            final int newCapacity = Math.max(capacity, dates.length + (dates.length >> 1) + 16);
+            this.dates = Arrays.copyOf(dates, newCapacity);
+            this.open = Arrays.copyOf(open, newCapacity);
+            this.high = Arrays.copyOf(high, newCapacity);
+            this.low = Arrays.copyOf(low, newCapacity);
+            this.close = Arrays.copyOf(close, newCapacity);
+            this.closeAdj = Arrays.copyOf(closeAdj, newCapacity);
+            this.volume = Arrays.copyOf(volume, newCapacity);
+        }
+    }
+
+
+    /**
+     * Returns the index of the next comma, or the line length if there are no more commas
+     * @param bytes     the line bytes
+     * @param start     the start index
+     * @param length    the line length
+     * @return          the index of next delimiter
+     */
+    private static int indexOf(byte[] bytes, int start, int length) {
+        if (start > length) {
+            throw new YahooException("Too few values in quote line: " + new String(bytes, 0, length));
+        } else {
+            for (int i=start; i<length; ++i) {
+                if (bytes[i] == ',') {
+                    return i;
+                }
+            }
+            return length;
+        }
+    }
+
+
+    /**
+     * Returns true if the byte is an ASCII digit
+     * @param value the byte value
+     * @return      true if digit
+     */
+    private static boolean isDigit(byte value) {
+        return value >= '0' && value <= '9';
+    }
+
+
+    /**
+     * Parses a date in the form yyyy-MM-dd into epoch days
+     * @param bytes     the line bytes
+     * @param start     the start index, inclusive
+     * @param end       the end index, exclusive
+     * @return          the date expressed in epoch days
+     * @throws YahooException   if the date is malformed, or the day does not exist in the month
+     */
+    static int parseDate(byte[] bytes, int start, int end) {
+        int index = start;
+        int year = 0, month = 0, day = 0;
+        while (index < end && isDigit(bytes[index])) year = year * 10 + (bytes[index++] - '0');
+        if (index >= end || bytes[index++] != '-') throw new YahooException("Malformed date in quote line");
+        while (index < end && isDigit(bytes[index])) month = month * 10 + (bytes[index++] - '0');
+        if (index >= end || bytes[index++] != '-') throw new YahooException("Malformed date in quote line");
+        while (index < end && isDigit(bytes[index])) day = day * 10 + (bytes[index++] - '0');
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            throw new YahooException("Invalid date in quote line: " + year + "-" + month + "-" + day);
+        } else {
+            return toEpochDay(year, month, day);
+        }
+    }
+
+
+    /**
+     * Returns the number of days in the month for the proleptic ISO year, consistent with LocalDate.lengthOfMonth()
+     * @param year      the year
+     * @param month     the month of year, 1-12
+     * @return          the number of days in the month
+     */
+    static int lengthOfMonth(int year, int month) {
+        if (month == 2) {
+            final boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        } else if (month == 4 || month == 6 || month == 9 || month == 11) {
+            return 30;
+        } else {
+            return 31;
+        }
+    }
+
+
+    /**
+     * Returns the epoch day for the proleptic ISO year, month and day, consistent with LocalDate.toEpochDay()
+     * @param year      the year
+     * @param month     the month of year, 1-12
+     * @param day       the day of month, 1-31
+     * @return          the epoch day
+     */
+    static int toEpochDay(int year, int month, int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+
+    /**
+     * Parses a decimal number, returning NaN for empty or null values
+     * Numbers with at most 15 significant digits are converted exactly with a single correctly rounded
+     * division, which yields the same result as Double.parseDouble(), and anything else falls back to it.
+     * @param bytes     the line bytes
+     * @param start     the start index, inclusive
+     * @param end       the end index, exclusive
+     * @return          the parsed value
+     */
+    static double parseDouble(byte[] bytes, int start, int end) {
+        while (start < end && bytes[start] == ' ') start++;
+        while (end > start && bytes[end-1] == ' ') end--;
+        if (start == end) {
+            return Double.NaN;
+        } else if (bytes[start] == 'n' || bytes[start] == 'N') {
+            return Double.NaN;
+        } else {
+            int index = start;
+            int digits = 0;
+            int scale = 0;
+            long mantissa = 0L;
+            boolean fraction = false;
+            final boolean negative = bytes[index] == '-';
+            if (negative || bytes[index] == '+') index++;
+            while (index < end) {
+                final byte value = bytes[index++];
+                if (isDigit(value)) {
+                    if (digits > 0 || value != '0') digits++;
+                    if (fraction) scale++;
+                    mantissa = mantissa * 10L + (value - '0');
+                    if (digits > MAX_EXACT_DIGITS) {
+                        return parseDoubleSlow(bytes, start, end);
+                    }
+                } else if (value == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    return parseDoubleSlow(bytes, start, end);
+                }
+            }
+            if (scale >= POWERS_OF_TEN.length) {
+                return parseDoubleSlow(bytes, start, end);
+            } else {
+                final double result = scale == 0 ? (double)mantissa : (double)mantissa / POWERS_OF_TEN[scale];
+                return negative ? -result : result;
+            }
+        }
+    }
+
+
+    /**
+     * Parses a number that cannot be converted exactly on the fast path via Double.parseDouble()
+     * @param bytes     the line bytes
+     * @param start     the start index, inclusive
+     * @param end       the end index, exclusive
+     * @return          the parsed value
+     */
+    private static double parseDoubleSlow(byte[] bytes, int start, int end) {
+        return Double.parseDouble(new String(bytes, start, end - start, StandardCharsets.US_ASCII));
+    }
+
+}
@@ -0,0 +1,378 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.util.Asserts;
+import com.zavtech.morpheus.util.IO;
+
+/**
+ * A distributor of live quote snapshots that conflates per ticker, so slow subscribers skip to the latest state.
+ *
+ * Each subscription holds one slot per ticker, and publishing a snapshot swaps the latest quote for each ticker into
+ * the slot of every subscription with a single atomic operation, so the publisher never blocks and never waits for a
+ * subscriber. A subscriber that falls behind simply finds newer quotes in its slots, and the quotes it missed are
+ * dropped. Each subscription also queues the ordinal of a ticker only when its slot goes from empty to full, so the
+ * queue never holds more than one entry per ticker. Quotes are immutable and shared by all subscriptions, so the heap
+ * held by the distributor is bounded by the number of tickers times the number of subscriptions, however slow they are.
+ *
+ * Any use of the extracted data from this software should adhere to Yahoo Finance Terms and Conditions.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooQuoteDistributor {
+
+    private int maxTickers;
+    private AtomicInteger tickerCount = new AtomicInteger();
+    private ConcurrentHashMap<String,Integer> ordinalMap = new ConcurrentHashMap<>();
+    private List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+
+    /**
+     * Constructor
+     * @param maxTickers    the max number of distinct tickers that can be distributed
+     */
+    public YahooQuoteDistributor(int maxTickers) {
+        Asserts.assertTrue(maxTickers > 0, "The max tickers must be > 0");
+        this.maxTickers = maxTickers;
+    }
+
+
+    /**
+     * Returns the max number of distinct tickers that can be distributed
+     * @return  the max number of tickers
+     */
+    public int getMaxTickers() {
+        return maxTickers;
+    }
+
+    /**
+     * Returns the number of active subscriptions
+     * @return  the number of subscriptions
+     */
+    public int getSubscriptionCount() {
+        return subscriptions.size();
+    }
+
+
+    /**
+     * Returns a new subscription which the caller drains at its own pace
+     * @return  the new subscription
+     */
+    public Subscription subscribe() {
+        final Subscription subscription = new Subscription(null, null);
+        this.subscriptions.add(subscription);
+        return subscription;
+    }
+
+
+    /**
+     * Returns a new subscription that delivers quotes to a consumer on an executor
+     * At most one drain task per subscription is scheduled at any time, so a slow consumer never causes tasks to queue up.
+     * @param consumer  the consumer of quotes
+     * @param executor  the executor to deliver quotes on
+     * @return          the new subscription
+     */
+    public Subscription subscribe(Consumer<Quote> consumer, Executor executor) {
+        Asserts.notNull(consumer, "The consumer cannot be null");
+        Asserts.notNull(executor, "The executor cannot be null");
+        final Subscription subscription = new Subscription(consumer, executor);
+        this.subscriptions.add(subscription);
+        return subscription;
+    }
+
+
+    /**
+     * Publishes a live quote snapshot to all subscriptions, which never blocks
+     * @param timestamp the snapshot time in epoch millis
+     * @param snapshot  the snapshot from YahooQuoteLiveSource
+     * @throws YahooException   if the snapshot introduces more tickers than this distributor supports
+     */
+    public void publish(long timestamp, DataFrame<String,YahooField> snapshot) {
+        final int rowCount = snapshot.rowCount();
+        final int colCount = snapshot.colCount();
+        final YahooField[] fields = new YahooField[colCount];
+        for (int j=0; j<colCount; ++j) {
+            fields[j] = snapshot.cols().key(j);
+        }
+        for (int i=0; i<rowCount; ++i) {
+            final String ticker = snapshot.rows().key(i);
+            final Object[] values = new Object[colCount];
+            for (int j=0; j<colCount; ++j) {
+                values[j] = snapshot.data().getValue(i, j);
+            }
+            publish(new Quote(ticker, timestamp, fields, values));
+        }
+    }
+
+
+    /**
+     * Publishes a single quote to all subscriptions, which never blocks
+     * @param quote the quote to publish
+     * @throws YahooException   if the quote introduces more tickers than this distributor supports
+     */
+    public void publish(Quote quote) {
+        final int ordinal = ordinalOf(quote.getTicker());
+        this.subscriptions.forEach(subscription -> subscription.offer(ordinal, quote));
+    }
+
+
+    /**
+     * Returns the ordinal for the ticker, assigning the next ordinal the first time the ticker is seen
+     * @param ticker    the ticker
+     * @return          the ticker ordinal
+     */
+    private int ordinalOf(String ticker) {
+        final Integer ordinal = ordinalMap.get(ticker);
+        if (ordinal != null) {
+            return ordinal;
+        } else {
+            return ordinalMap.computeIfAbsent(ticker, key -> {
+                final int next = tickerCount.getAndIncrement();
+                if (next >= maxTickers) {
+                    tickerCount.decrementAndGet();
+                    throw new YahooException("The quote distributor is limited to " + maxTickers + " tickers");
+                } else {
+                    return next;
+                }
+            });
+        }
+    }
+
+
+    /**
+     * A subscription to conflated quotes, with one slot per ticker that holds the latest quote not yet consumed
+     */
+    public class Subscription implements AutoCloseable {
+
+        private Consumer<Quote> consumer;
+        private Executor executor;
+        private AtomicReferenceArray<Quote> slots;
+        private ConcurrentLinkedQueue<Integer> pending = new ConcurrentLinkedQueue<>();
+        private AtomicBoolean scheduled = new AtomicBoolean();
+        private AtomicLong conflated = new AtomicLong();
+
+        /**
+         * Constructor
+         * @param consumer  the consumer to push quotes to, null for a pull subscription
+         * @param executor  the executor to push quotes on, null for a pull subscription
+         */
+        private Subscription(Consumer<Quote> consumer, Executor executor) {
+            this.consumer = consumer;
+            this.executor = executor;
+            this.slots = new AtomicReferenceArray<>(maxTickers);
+        }
+
+        /**
+         * Returns the number of quotes that were replaced before this subscription consumed them
+         * @return  the number of conflated quotes
+         */
+        public long getConflatedCount() {
+            return conflated.get();
+        }
+
+        /**
+         * Places the quote in the slot for the ticker, replacing any quote not yet consumed
+         * @param ordinal   the ticker ordinal
+         * @param quote     the quote
+         */
+        private void offer(int ordinal, Quote quote) {
+            final Quote previous = slots.getAndSet(ordinal, quote);
+            if (previous != null) {
+                this.conflated.incrementAndGet();
+            } else {
+                this.pending.offer(ordinal);
+                if (consumer != null && scheduled.compareAndSet(false, true)) {
+                    this.executor.execute(this::deliver);
+                }
+            }
+        }
+
+        /**
+         * Returns the latest quote for the next ticker that has changed since it was last consumed
+         * @return  the next quote, null if there are none
+         */
+        public Quote poll() {
+            while (true) {
+                final Integer ordinal = pending.poll();
+                if (ordinal == null) {
+                    return null;
+                } else {
+                    final Quote quote = slots.getAndSet(ordinal, null);
+                    if (quote != null) {
+                        return quote;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Passes the latest quote of every ticker that has changed since it was last consumed to the consumer
+         * @param consumer  the consumer of quotes
+         * @return          the number of quotes consumed
+         */
+        public int drain(Consumer<Quote> consumer) {
+            int count = 0;
+            Quote quote = poll();
+            while (quote != null) {
+                consumer.accept(quote);
+                count++;
+                quote = poll();
+            }
+            return count;
+        }
+
+        /**
+         * Drains this subscription on the executor, and re-checks after clearing the flag so no quote is stranded
+         */
+        private void deliver() {
+            try {
+                drain(quote -> {
+                    try {
+                        consumer.accept(quote);
+                    } catch (Exception ex) {
+                        IO.println("Quote subscriber failed for " + quote.getTicker() + ": " + ex.getMessage());
+                    }
+                });
+            } finally {
+                this.scheduled.set(false);
+                if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+                    this.executor.execute(this::deliver);
+                }
+            }
+        }
+
+        /**
+         * Removes this subscription from the distributor, and releases any quotes not yet consumed
+         */
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+            this.pending.clear();
+            for (int i=0; i<slots.length(); ++i) {
+                this.slots.set(i, null);
+            }
+        }
+    }
+
+
+    /**
+     * An immutable quote for a single ticker from a live snapshot
+     */
+    public static class Quote {
+
+        private String ticker;
+        private long timestamp;
+        private YahooField[] fields;
+        private Object[] values;
+
+        /**
+         * Constructor
+         * @param ticker    the ticker
+         * @param timestamp the snapshot time in epoch millis
+         * @param fields    the fields, which may be shared by all quotes of a snapshot
+         * @param values    the values in the order of the fields
+         */
+        public Quote(String ticker, long timestamp, YahooField[] fields, Object[] values) {
+            Asserts.assertTrue(fields.length == values.length, "The number of fields and values must match");
+            this.ticker = ticker;
+            this.timestamp = timestamp;
+            this.fields = fields;
+            this.values = values;
+        }
+
+        /**
+         * Returns the ticker for this quote
+         * @return  the ticker
+         */
+        public String getTicker() {
+            return ticker;
+        }
+
+        /**
+         * Returns the snapshot time for this quote
+         * @return  the snapshot time in epoch millis
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Returns the value for the field
+         * @param field the field
+         * @param <T>   the value type
+         * @return      the value, null if the field is not in this quote
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T getValue(YahooField field) {
+            for (int i=0; i<fields.length; ++i) {
+                if (fields[i].equals(field)) {
+                    return (T)values[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the double value for the field
+         * @param field the field
+         * @return      the value, NaN if missing
+         */
+        public double getDouble(YahooField field) {
+            final Object value = getValue(field);
+            return value instanceof Number ? ((Number)value).doubleValue() : Double.NaN;
+        }
+
+        @Override()
+        public String toString() {
+            final StringBuilder text = new StringBuilder(ticker).append("@").append(timestamp);
+            for (int i=0; i<fields.length; ++i) {
+                text.append(i == 0 ? " " : ", ").append(fields[i]).append("=").append(values[i]);
+            }
+            return text.toString();
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        final List<String> tickers = Arrays.asList("AAPL", "MSFT", "GOOGL", "ORCL", "GBPUSD");
+        final YahooQuoteLiveSource source = new YahooQuoteLiveSource();
+        final YahooQuoteDistributor distributor = new YahooQuoteDistributor(tickers.size());
+        distributor.subscribe(IO::println, Executors.newSingleThreadExecutor());
+        final YahooQuoteDistributor.Subscription slow = distributor.subscribe();
+        for (int i=0; i<10; ++i) {
+            distributor.publish(System.currentTimeMillis(), source.read(o -> o.withTickers(tickers)));
+            Thread.sleep(2000);
+        }
+        IO.println("Slow subscriber drained " + slow.drain(quote -> {}) + ", conflated " + slow.getConflatedCount());
+        System.exit(0);
+    }
+}
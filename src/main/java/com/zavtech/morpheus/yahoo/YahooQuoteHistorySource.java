@@ -15,35 +15,49 @@
  */
 package com.zavtech.morpheus.yahoo;
 
-import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.IntStream;
 
 import com.zavtech.morpheus.array.Array;
 import com.zavtech.morpheus.frame.DataFrame;
-import com.zavtech.morpheus.frame.DataFrameCursor;
 import com.zavtech.morpheus.frame.DataFrameException;
 import com.zavtech.morpheus.frame.DataFrameSource;
 import com.zavtech.morpheus.index.Index;
 import com.zavtech.morpheus.range.Range;
 import com.zavtech.morpheus.util.Asserts;
+import com.zavtech.morpheus.util.Collect;
 import com.zavtech.morpheus.util.IO;
-import com.zavtech.morpheus.util.TextStreamReader;
 import com.zavtech.morpheus.util.http.HttpClient;
 import com.zavtech.morpheus.util.http.HttpException;
-import com.zavtech.morpheus.util.http.HttpHeader;
 
 /**
  * A DataFrameSource implementation that loads historical quote data from Yahoo Finance using their CSV API.
@@ -56,8 +70,6 @@ import com.zavtech.morpheus.util.http.HttpHeader;
  */
 public class YahooQuoteHistorySource extends DataFrameSource<LocalDate,YahooField,YahooQuoteHistorySource.Options> {
 
-    private static final String CRUMB_URL = "https://query1.finance.yahoo.com/v1/test/getcrumb";
-    private static final String COOKIE_URL = "https://finance.yahoo.com/quote/SPY?p=SPY";
     private static final String QUOTE_URL = "https://query1.finance.yahoo.com/v7/finance/download/%s?period1=%d&period2=%d&interval=1d&events=history&crumb=%s";
 
     private static Predicate<LocalDate> weekdayPredicate = date -> {
@@ -83,10 +95,19 @@ public class YahooQuoteHistorySource extends DataFrameSource<LocalDate,YahooFiel
         YahooField.PX_CHANGE_PERCENT
     );
 
-    private String crumb;
+    private static final int MAX_PARTITION_THREADS = 8;
+
+    private static final ExecutorService partitionExecutor = createPartitionExecutor();
+
+    private static final ExecutorService tickerExecutor = createTickerExecutor();
+
+    private static final YahooObjectPool<YahooQuoteDecoder> decoders = new YahooObjectPool<>(32, () -> new YahooQuoteDecoder(1024));
+
     private Duration connectTimeout;
     private Duration readTimeout;
-    private Map<String,String> cookies;
+    private YahooQuoteCache cache;
+    private YahooSession session;
+    private YahooHedgePolicy hedgePolicy;
 
 
     /**
@@ -102,9 +123,44 @@ public class YahooQuoteHistorySource extends DataFrameSource<LocalDate,YahooFiel
      * @param readTimeout       the http read timeout
      */
     public YahooQuoteHistorySource(Duration connectTimeout, Duration readTimeout) {
+        this(connectTimeout, readTimeout, YahooQuoteCache.getDefault().orElse(null));
+    }
+
+    /**
+     * Constructor
+     * @param connectTimeout    the http connect timeout
+     * @param readTimeout       the http read timeout
+     * @param cache             the optional on-disk cache of daily bars, null to always download all bars
+     */
+    public YahooQuoteHistorySource(Duration connectTimeout, Duration readTimeout, YahooQuoteCache cache) {
+        this(connectTimeout, readTimeout, cache, YahooSession.getDefault());
+    }
+
+    /**
+     * Constructor
+     * @param connectTimeout    the http connect timeout
+     * @param readTimeout       the http read timeout
+     * @param cache             the optional on-disk cache of daily bars, null to always download all bars
+     * @param session           the session that holds the cookies and crumb for requests
+     */
+    public YahooQuoteHistorySource(Duration connectTimeout, Duration readTimeout, YahooQuoteCache cache, YahooSession session) {
+        this(connectTimeout, readTimeout, cache, session, null);
+    }
+
+    /**
+     * Constructor
+     * @param connectTimeout    the http connect timeout
+     * @param readTimeout       the http read timeout
+     * @param cache             the optional on-disk cache of daily bars, null to always download all bars
+     * @param session           the session that holds the cookies and crumb for requests
+     * @param hedgePolicy       the optional policy to hedge slow downloads with a duplicate request, null for no hedging
+     */
+    public YahooQuoteHistorySource(Duration connectTimeout, Duration readTimeout, YahooQuoteCache cache, YahooSession session, YahooHedgePolicy hedgePolicy) {
         this.connectTimeout = connectTimeout;
         this.readTimeout = readTimeout;
-        this.cookies = new HashMap<>();
+        this.cache = cache;
+        this.session = session;
+        this.hedgePolicy = hedgePolicy;
     }
 
 
@@ -112,210 +168,540 @@ public class YahooQuoteHistorySource extends DataFrameSource<LocalDate,YahooFiel
     public DataFrame<LocalDate,YahooField> read(Consumer<Options> configurator) throws DataFrameException {
         final Options options = initOptions(new Options(), configurator);
         try {
-            final URL url = createURL(options.ticker, options.startDate,options.endDate);
-            IO.println("Calling " + url);
-            return HttpClient.getDefault().<DataFrame<LocalDate,YahooField>>doGet(httpRequest -> {
-                httpRequest.setUrl(url);
-                httpRequest.setRetryCount(2);
-                httpRequest.setReadTimeout((int)readTimeout.getSeconds() * 1000);
-                httpRequest.setConnectTimeout((int)connectTimeout.getSeconds() * 1000);
-                httpRequest.getCookies().putAll(getCookies());
-                httpRequest.setResponseHandler(response -> {
-                    if (response.getStatus().getCode() != 200) {
-                        final int code = response.getStatus().getCode();
-                        throw new HttpException(httpRequest, "Yahoo Finance responded with status code " + code, null);
-                    } else {
-                        final InputStream stream = response.getStream();
-                        final TextStreamReader reader = new TextStreamReader(stream);
-                        if (reader.hasNext()) reader.nextLine(); //Swallow the header
-                        final Index<LocalDate> rowKeys = createDateIndex(options);
-                        final Index<YahooField> colKeys = Index.of(fields.copy());
-                        final DataFrame<LocalDate,YahooField> frame = DataFrame.ofDoubles(rowKeys, colKeys);
-                        final DataFrameCursor<LocalDate,YahooField> cursor = frame.cursor();
-                        while (reader.hasNext()) {
-                            final String line = reader.nextLine();
-                            final String[] elements = line.split(",");
-                            final LocalDate date = parseDate(elements[0]);
-                            final double open = Double.parseDouble(elements[1]);
-                            final double high = Double.parseDouble(elements[2]);
-                            final double low = Double.parseDouble(elements[3]);
-                            final double close = Double.parseDouble(elements[4]);
-                            final double closeAdj = Double.parseDouble(elements[5]);
-                            final double volume = Double.parseDouble(elements[6]);
-                            final double splitRatio = Math.abs(closeAdj - close) > 0.00001d ? closeAdj / close : 1d;
-                            final double adjustment = options.dividendAdjusted ? splitRatio : 1d;
-                            if (options.paddedHolidays) {
-                                cursor.atRowKey(date);
-                                cursor.atColOrdinal(0).setDouble(open * adjustment);
-                                cursor.atColOrdinal(1).setDouble(high * adjustment);
-                                cursor.atColOrdinal(2).setDouble(low * adjustment);
-                                cursor.atColOrdinal(3).setDouble(close * adjustment);
-                                cursor.atColOrdinal(4).setDouble(volume);
-                                cursor.atColOrdinal(5).setDouble(splitRatio);
-                            } else {
-                                frame.rows().add(date, v -> {
-                                    switch (v.colOrdinal()) {
-                                        case 0: return open * adjustment;
-                                        case 1: return high * adjustment;
-                                        case 2: return low * adjustment;
-                                        case 3: return close * adjustment;
-                                        case 4: return volume;
-                                        case 5: return splitRatio;
-                                        default: return v.getDouble();
-                                    }
-                                });
+            final String ticker = options.ticker;
+            if (cache == null) {
+                final int columns = getColumns(options);
+                final YahooQuoteBars bars = download(ticker, options.startDate, options.endDate, columns, options.partitionYears, options.permits);
+                return createFrame(options, bars);
+            } else {
+                final YahooQuoteBars bars = cache.read(ticker, options.startDate, options.endDate, (start, end) -> {
+                    return download(ticker, start, end, YahooQuoteDecoder.COLUMN_ALL, options.partitionYears, options.permits);
+                });
+                return createFrame(options, bars);
+            }
+        } catch (Exception ex) {
+            throw new DataFrameException("Market Data query failed for asset " +  options.ticker, ex);
+        }
+    }
+
+
+    /**
+     * Downloads unadjusted daily bars and split ratios for the date range and appends them to the quote store
+     * Any bars already stored on or after the first downloaded date are replaced, so the same range can be downloaded
+     * again to pick up restated bars. The download bypasses any cache configured for this source.
+     * @param store     the quote store to append the bars to
+     * @param ticker    the security ticker
+     * @param start     the start date for range
+     * @param end       the end date for range
+     * @throws YahooException   if the download or the write to the store fails
+     */
+    public void download(YahooQuoteStore store, String ticker, LocalDate start, LocalDate end) {
+        Asserts.assertTrue(start.isBefore(end), "The start date must be < end date");
+        final YahooQuoteBars bars = download(ticker, start, end, YahooQuoteDecoder.COLUMN_ALL, 0, null);
+        try (YahooQuoteStore.Writer writer = store.writer(ticker)) {
+            writer.append(bars, start, end);
+        }
+    }
+
+
+    /**
+     * Loads quote bars for multiple tickers, handing each frame to the consumer as soon as its download completes
+     * The configurator is applied to the options for every ticker, and the ticker is then set on those options, so
+     * the configurator need only specify the date range and other common settings. Frames are passed to the consumer
+     * on the calling thread in order of completion, so the consumer need not be thread safe. Tickers that fail to load
+     * do not prevent the remaining tickers from loading, and are reported in a single exception once all have completed.
+     * Partitions of long date ranges count against the same in flight limit as the tickers themselves. Tickers run on
+     * an executor shared by all calls, and no more than the max in flight are submitted to it at any one time.
+     * @param tickers       the security tickers to load
+     * @param maxInFlight   the max number of requests in flight at any one time, including partitions
+     * @param configurator  the configurator for options common to all tickers
+     * @param consumer      the consumer to receive each ticker and its frame of bars
+     * @throws YahooException   if any of the tickers failed to load
+     */
+    public void read(Iterable<String> tickers, int maxInFlight, Consumer<Options> configurator, BiConsumer<String,DataFrame<LocalDate,YahooField>> consumer) {
+        Asserts.assertTrue(maxInFlight > 0, "The max in flight must be > 0");
+        final List<String> tickerList = new ArrayList<>();
+        tickers.forEach(tickerList::add);
+        if (tickerList.size() > 0) {
+            if (cache == null) {
+                this.session.getCredentials();
+            }
+            final Semaphore permits = new Semaphore(maxInFlight);
+            final Map<Future<DataFrame<LocalDate,YahooField>>,String> tickerMap = new HashMap<>();
+            final CompletionService<DataFrame<LocalDate,YahooField>> completionService = new ExecutorCompletionService<>(tickerExecutor);
+            final Consumer<String> submit = ticker -> tickerMap.put(completionService.submit(() -> read(options -> {
+                configurator.accept(options);
+                options.withTicker(ticker);
+                options.permits = permits;
+            })), ticker);
+            try {
+                int submitted = Math.min(maxInFlight, tickerList.size());
+                tickerList.subList(0, submitted).forEach(submit);
+                final Map<String,Throwable> failures = new HashMap<>();
+                for (int i=0; i<tickerList.size(); ++i) {
+                    final Future<DataFrame<LocalDate,YahooField>> future = completionService.take();
+                    final String ticker = tickerMap.get(future);
+                    if (submitted < tickerList.size()) {
+                        submit.accept(tickerList.get(submitted++));
+                    }
+                    try {
+                        consumer.accept(ticker, future.get());
+                    } catch (ExecutionException ex) {
+                        failures.put(ticker, ex.getCause());
+                    }
+                }
+                if (!failures.isEmpty()) {
+                    final String message = "Failed to load quotes for " + failures.size() + " of " + tickerList.size() + " tickers: " + failures.keySet();
+                    final YahooException exception = new YahooException(message, failures.values().iterator().next());
+                    failures.values().stream().skip(1).forEach(exception::addSuppressed);
+                    throw exception;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new YahooException("Interrupted while loading quotes for " + tickerList, ex);
+            } finally {
+                tickerMap.keySet().forEach(future -> future.cancel(true));
+            }
+        }
+    }
+
+
+    /**
+     * Returns the executor shared by all sources to load tickers in bulk, where each call bounds its own concurrency
+     * @return  the executor of daemon threads, which are reused across calls and time out when idle
+     */
+    private static ExecutorService createTickerExecutor() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30L, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "YahooQuoteHistorySource-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Returns the executor shared by all sources to download partitions of long date ranges in parallel
+     * @return  the bounded executor of daemon threads, which time out when idle
+     */
+    private static ExecutorService createPartitionExecutor() {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PARTITION_THREADS, MAX_PARTITION_THREADS, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "YahooQuoteHistorySource-Partition-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    /**
+     * Downloads daily bars for the date range, splitting long ranges into partitions that are downloaded in parallel
+     * Each partition overlaps the next by one day, and the partitions are stitched back together with any duplicate
+     * bars on the seams removed. Split ratios remain consistent across partitions because Yahoo Finance expresses
+     * the adjusted close relative to the latest prices regardless of the range requested.
+     *
+     * Partitions run on an executor shared by all sources, so concurrent reads cannot multiply the number of threads.
+     * When the caller has an in flight limit, a permit is acquired before each request is started and is released when
+     * it completes, so a partitioned download consumes the same budget as the equivalent number of separate tickers.
+     * A partition that is cancelled while its request is in flight keeps its permit until the request actually returns,
+     * and only a partition cancelled before it started returns its permit on cancellation.
+     * @param ticker            the security ticker
+     * @param start             the start date
+     * @param end               the end date
+     * @param columns           the bit mask of optional YahooQuoteDecoder columns to decode
+     * @param partitionYears    the max number of years per partition, 0 to download the range in one request
+     * @param permits           the permits that limit the caller's requests in flight, null for no limit
+     * @return                  the unadjusted daily bars sorted by date
+     */
+    private YahooQuoteBars download(String ticker, LocalDate start, LocalDate end, int columns, int partitionYears, Semaphore permits) {
+        final List<Future<YahooQuoteBars>> futures = new ArrayList<>();
+        try {
+            if (partitionYears <= 0 || !start.plusYears(partitionYears).isBefore(end)) {
+                acquire(permits);
+                return download(ticker, start, end, columns, permits);
+            } else {
+                for (LocalDate from = start; from.isBefore(end); from = from.plusYears(partitionYears)) {
+                    final LocalDate partitionStart = from;
+                    final LocalDate partitionEnd = from.plusYears(partitionYears).isBefore(end) ? from.plusYears(partitionYears).plusDays(1) : end;
+                    acquire(permits);
+                    final AtomicBoolean started = new AtomicBoolean();
+                    final FutureTask<YahooQuoteBars> task = new FutureTask<YahooQuoteBars>(() -> {
+                        if (!started.compareAndSet(false, true)) {
+                            throw new CancellationException("Partition cancelled before it started");
+                        } else {
+                            return download(ticker, partitionStart, partitionEnd, columns, permits);
+                        }
+                    }) {
+                        @Override
+                        protected void done() {
+                            if (started.compareAndSet(false, true)) {
+                                release(permits);
                             }
                         }
-                        if (options.paddedHolidays) {
-                            frame.fill().down(2);
+                    };
+                    futures.add(task);
+                    partitionExecutor.execute(task);
+                }
+                YahooQuoteBars result = new YahooQuoteBars(0);
+                for (Future<YahooQuoteBars> future : futures) {
+                    result = result.merge(future.get());
+                }
+                return result;
+            }
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof YahooException) {
+                throw (YahooException)ex.getCause();
+            } else {
+                throw new YahooException("Failed to download quotes for " + ticker, ex.getCause());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new YahooException("Interrupted while downloading quotes for " + ticker, ex);
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+
+    /**
+     * Acquires a permit to start a request, blocking until one is available
+     * @param permits   the permits that limit the caller's requests in flight, null for no limit
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    private static void acquire(Semaphore permits) throws InterruptedException {
+        if (permits != null) {
+            permits.acquire();
+        }
+    }
+
+
+    /**
+     * Releases a permit acquired to start a request
+     * @param permits   the permits that limit the caller's requests in flight, null for no limit
+     */
+    private static void release(Semaphore permits) {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+
+    /**
+     * Downloads daily bars from Yahoo Finance for the ticker and date range specified, hedged if a policy is configured
+     * The caller must hold a permit for the request, which is released once the request returns. When the download is
+     * hedged, the permit is handed to the hedge policy, which releases it once the primary attempt actually returns,
+     * and a hedge is only sent if another permit is free.
+     * @param ticker    the security ticker
+     * @param start     the start date
+     * @param end       the end date
+     * @param columns   the bit mask of optional YahooQuoteDecoder columns to decode
+     * @param permits   the permits that limit the caller's requests in flight, null for no limit
+     * @return          the unadjusted daily bars sorted by date
+     */
+    private YahooQuoteBars download(String ticker, LocalDate start, LocalDate end, int columns, Semaphore permits) {
+        if (hedgePolicy == null) {
+            try {
+                return request(ticker, start, end, columns);
+            } finally {
+                release(permits);
+            }
+        } else {
+            return hedgePolicy.execute(ticker, permits, () -> request(ticker, start, end, columns));
+        }
+    }
+
+
+    /**
+     * Sends a single request to Yahoo Finance for daily bars for the ticker and date range specified
+     * @param ticker    the security ticker
+     * @param start     the start date
+     * @param end       the end date
+     * @param columns   the bit mask of optional YahooQuoteDecoder columns to decode
+     * @return          the unadjusted daily bars sorted by date
+     */
+    private YahooQuoteBars request(String ticker, LocalDate start, LocalDate end, int columns) {
+        try {
+            return session.execute(credentials -> {
+                final URL url = createURL(ticker, start, end, credentials.getCrumb());
+                IO.println("Calling " + url);
+                return HttpClient.getDefault().<YahooQuoteBars>doGet(httpRequest -> {
+                    httpRequest.setUrl(url);
+                    httpRequest.setRetryCount(2);
+                    httpRequest.setReadTimeout((int)readTimeout.getSeconds() * 1000);
+                    httpRequest.setConnectTimeout((int)connectTimeout.getSeconds() * 1000);
+                    httpRequest.getCookies().putAll(credentials.getCookies());
+                    httpRequest.setResponseHandler(response -> {
+                        final int code = response.getStatus().getCode();
+                        if (YahooSession.isExpired(code)) {
+                            throw new YahooSession.ExpiredException("Yahoo Finance rejected session with status code " + code);
+                        } else if (code != 200) {
+                            throw new HttpException(httpRequest, "Yahoo Finance responded with status code " + code, null);
+                        } else {
+                            final InputStream stream = response.getStream();
+                            final YahooQuoteDecoder decoder = decoders.borrow();
+                            try {
+                                decoder.decode(stream, columns);
+                                return Optional.of(YahooQuoteBars.of(decoder));
+                            } finally {
+                                decoders.release(decoder);
+                            }
                         }
-                        calculateChanges(frame);
-                        return Optional.of(frame);
-                    }
+                    });
+                }).orElseGet(() -> {
+                    throw new RuntimeException("Failed to load quotes from URL: " + url);
                 });
-            }).orElseGet(() -> {
-                throw new RuntimeException("Failed to load DataFrame from URL: " + url);
             });
+        } catch (YahooException ex) {
+            throw ex;
         } catch (Exception ex) {
-            throw new DataFrameException("Market Data query failed for asset " +  options.ticker, ex);
+            throw new YahooException("Failed to download quotes for " + ticker, ex);
         }
     }
 
 
     /**
-     * Returns the date index to initialize the row axis
+     * Returns a newly created DataFrame populated with the bars specified
      * @param options   the options for the request
-     * @return          the date index for result DataFrame
+     * @param bars      the unadjusted bars sorted by date
+     * @return          the DataFrame of bars
      */
-    private Index<LocalDate> createDateIndex(Options options) {
-        final Range<LocalDate> range = Range.of(options.startDate, options.endDate);
+    static DataFrame<LocalDate,YahooField> createFrame(Options options, YahooQuoteBars bars) {
         if (options.paddedHolidays) {
-            return Index.of(range.filter(weekdayPredicate).toArray());
+            return createPaddedFrame(options, bars);
         } else {
-            final int size = (int)range.estimateSize() + 10;
-            return Index.of(LocalDate.class, size);
+            return createUnpaddedFrame(options, bars);
         }
     }
 
 
     /**
-     * Calculates price changes from close to close
-     * @param frame the quote frame
-     * @return      the same as input
+     * Returns a newly created DataFrame with one row per bar, built in a single step from exactly sized primitive columns
+     * Price changes are computed from the prior close in the same pass that copies the bars.
+     * @param options   the options for the request
+     * @param bars      the unadjusted bars sorted by date
+     * @return          the DataFrame of bars
      */
-    private DataFrame<LocalDate,YahooField> calculateChanges(DataFrame<LocalDate,YahooField> frame) {
-        frame.rows().sort(true);
-        IntStream.range(1, frame.rowCount()).forEach(rowIndex -> {
-            final double previous = frame.data().getDouble(rowIndex - 1, YahooField.PX_CLOSE);
-            final double current = frame.data().getDouble(rowIndex, YahooField.PX_CLOSE);
-            frame.data().setDouble(rowIndex, YahooField.PX_CHANGE, current - previous);
-            frame.data().setDouble(rowIndex, YahooField.PX_CHANGE_PERCENT, (current / previous) - 1d);
-        });
-        return frame;
+    private static DataFrame<LocalDate,YahooField> createUnpaddedFrame(Options options, YahooQuoteBars bars) {
+        final int size = bars.size();
+        final Array<LocalDate> dates = Array.of(LocalDate.class, size);
+        final double[][] data = createColumns(options, size);
+        final double[] close = getCloseColumn(data, size);
+        final double[] change = data[6];
+        final double[] changePercent = data[7];
+        for (int i=0; i<size; ++i) {
+            dates.setValue(i, LocalDate.ofEpochDay(bars.getDate(i)));
+            setBar(options, bars, i, data, close, i);
+            if (change != null) change[i] = i > 0 ? close[i] - close[i-1] : Double.NaN;
+            if (changePercent != null) changePercent[i] = i > 0 ? (close[i] / close[i-1]) - 1d : Double.NaN;
+        }
+        return createFrame(dates, data);
+    }
+
+
+    /**
+     * Returns a newly created DataFrame with a row for every weekday in the date range, with holidays padded
+     * Holidays are filled down from the prior bar, for at most two consecutive days, the same as frame.fill().down(2)
+     * @param options   the options for the request
+     * @param bars      the unadjusted bars sorted by date
+     * @return          the DataFrame of bars
+     */
+    private static DataFrame<LocalDate,YahooField> createPaddedFrame(Options options, YahooQuoteBars bars) {
+        final Array<LocalDate> dates = createDates(options);
+        final int size = dates.length();
+        final double[][] data = createColumns(options, size);
+        final double[] close = getCloseColumn(data, size);
+        for (double[] column : data) {
+            if (column != null) {
+                Arrays.fill(column, Double.NaN);
+            }
+        }
+        if (close != null && close != data[3]) {
+            Arrays.fill(close, Double.NaN);
+        }
+        for (int i=0, j=0; i<size && j<bars.size(); ++i) {
+            final long date = dates.getValue(i).toEpochDay();
+            while (j < bars.size() && bars.getDate(j) < date) {
+                j++;
+            }
+            if (j < bars.size() && bars.getDate(j) == date) {
+                setBar(options, bars, j, data, close, i);
+            }
+        }
+        for (int j=0; j<6; ++j) {
+            fillDown(data[j], 2);
+        }
+        if (close != data[3]) {
+            fillDown(close, 2);
+        }
+        calculateChanges(close, data[6], data[7]);
+        return createFrame(dates, data);
     }
 
+
     /**
-     * Called internally to construct the query URL.
-     * @param symbol    the asset symbol
-     * @param start     the start date
-     * @param end       the end date
-     * @return          the query url
-     * @throws Exception    if url construction fails
+     * Copies the bar at index into the selected columns at the row specified, applying any dividend adjustment
+     * @param options   the options for the request
+     * @param bars      the unadjusted bars
+     * @param index     the bar index
+     * @param data      the columns aligned with fields, with null for columns not selected
+     * @param close     the close column, which may not be selected, or null if not required
+     * @param row       the row to populate
      */
-    private URL createURL(String symbol, LocalDate start, LocalDate end) throws Exception {
-        if (start.isAfter(end)) {
-            throw new IllegalArgumentException("The start date must be after the end date");
-        } else {
-            final String crumb = getCrumb();
-            final long startDate = start.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
-            final long endDate = end.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
-            return new URL(String.format(QUOTE_URL, symbol, startDate, endDate, crumb));
+    private static void setBar(Options options, YahooQuoteBars bars, int index, double[][] data, double[] close, int row) {
+        final double splitRatio = bars.getSplitRatio(index);
+        final double adjustment = options.dividendAdjusted ? splitRatio : 1d;
+        if (data[0] != null) data[0][row] = bars.getOpen(index) * adjustment;
+        if (data[1] != null) data[1][row] = bars.getHigh(index) * adjustment;
+        if (data[2] != null) data[2][row] = bars.getLow(index) * adjustment;
+        if (close != null) close[row] = bars.getClose(index) * adjustment;
+        if (data[4] != null) data[4][row] = bars.getVolume(index);
+        if (data[5] != null) data[5][row] = splitRatio;
+    }
+
+
+    /**
+     * Returns the columns aligned with fields, allocating arrays only for the fields selected in the options
+     * @param options   the options for the request
+     * @param size      the column length
+     * @return          the columns, with null for fields that are not selected
+     */
+    private static double[][] createColumns(Options options, int size) {
+        final double[][] data = new double[fields.length()][];
+        for (int j=0; j<data.length; ++j) {
+            if (options.isSelected(fields.getValue(j))) {
+                data[j] = new double[size];
+            }
         }
+        return data;
     }
 
+
     /**
-     * Parses dates in the formatSqlDate YYYY-MM-DD
-     * @param dateString    the string to parse
-     * @return  the parsed date value
+     * Returns the close column, or a temporary close column if only the change columns are selected
+     * @param data      the columns aligned with fields, with null for columns not selected
+     * @param size      the column length
+     * @return          the close column, null if neither close nor the change columns are selected
      */
-    private LocalDate parseDate(String dateString) {
-        if (dateString == null) {
-            return null;
+    private static double[] getCloseColumn(double[][] data, int size) {
+        if (data[3] != null) {
+            return data[3];
+        } else if (data[6] != null || data[7] != null) {
+            return new double[size];
         } else {
-            final String[] elements = dateString.trim().split("-");
-            final int year = Integer.parseInt(elements[0]);
-            final int month = Integer.parseInt(elements[1]);
-            final int date = Integer.parseInt(elements[2]);
-            return LocalDate.of(year, month, date);
+            return null;
         }
     }
 
 
     /**
-     * Returns the cookies to send with the request
-     * @return      the cookies to send with request
+     * Returns the bit mask of optional YahooQuoteDecoder columns required for the options
+     * @param options   the options for the request
+     * @return          the bit mask of columns to decode
      */
-    private synchronized Map<String,String> getCookies() {
-        if (cookies.isEmpty()) {
-            this.cookies = HttpClient.getDefault().<Map<String,String>>doGet(httpRequest -> {
-                httpRequest.setUrl(COOKIE_URL);
-                httpRequest.setReadTimeout((int)readTimeout.getSeconds() * 1000);
-                httpRequest.setConnectTimeout((int)connectTimeout.getSeconds() * 1000);
-                httpRequest.getHeaders().putAll(YahooFinance.getRequestHeaders());
-                httpRequest.setResponseHandler(response -> {
-                    final List<HttpHeader> headers = response.getHeaders();
-                    final Map<String,String> cookies = new HashMap<>();
-                    headers.forEach(header -> {
-                        if (header.getKey().equalsIgnoreCase("Set-Cookie")) {
-                            final String cookieValue = header.getValue();
-                            final String[] tokens = cookieValue.split(";");
-                            final Matcher matcher = Pattern.compile("(B)=(.+)").matcher("");
-                            for (String token : tokens) {
-                                if (matcher.reset(token.trim()).matches()) {
-                                    final String key = matcher.group(1);
-                                    final String value = matcher.group(2);
-                                    cookies.put(key, value);
-                                }
+    private static int getColumns(Options options) {
+        int columns = 0;
+        if (options.isSelected(YahooField.PX_OPEN)) columns |= YahooQuoteDecoder.COLUMN_OPEN;
+        if (options.isSelected(YahooField.PX_HIGH)) columns |= YahooQuoteDecoder.COLUMN_HIGH;
+        if (options.isSelected(YahooField.PX_LOW)) columns |= YahooQuoteDecoder.COLUMN_LOW;
+        if (options.isSelected(YahooField.PX_VOLUME)) columns |= YahooQuoteDecoder.COLUMN_VOLUME;
+        return columns;
+    }
 
-                            }
-                        }
-                    });
-                    return Optional.of(cookies);
-                });
-            }).orElseThrow(() -> new YahooException("Failed to capture cookies for historical quote request"));
+
+    /**
+     * Returns a newly created DataFrame from the dates and columns of data aligned with the fields for this source
+     * @param dates     the row keys for frame, sorted in ascending order
+     * @param data      the column data in the same order as fields, with null for columns to exclude
+     * @return          the newly created DataFrame
+     */
+    private static DataFrame<LocalDate,YahooField> createFrame(Array<LocalDate> dates, double[][] data) {
+        return DataFrame.of(Index.of(dates), YahooField.class, columns -> {
+            for (int j=0; j<data.length; ++j) {
+                if (data[j] != null) {
+                    columns.add(fields.getValue(j), Array.of(data[j]));
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Returns the weekday dates to initialize the row axis of a padded frame
+     * @param options   the options for the request
+     * @return          the weekday dates in ascending order
+     */
+    private static Array<LocalDate> createDates(Options options) {
+        final Range<LocalDate> range = Range.of(options.startDate, options.endDate);
+        return range.filter(weekdayPredicate).toArray();
+    }
+
+
+    /**
+     * Replaces NaN values with the last valid value, for at most maxCount consecutive values
+     * @param values    the values to fill
+     * @param maxCount  the max number of consecutive NaN values to fill
+     */
+    private static void fillDown(double[] values, int maxCount) {
+        if (values == null) {
+            return;
+        }
+        int count = 0;
+        double last = Double.NaN;
+        for (int i=0; i<values.length; ++i) {
+            if (!Double.isNaN(values[i])) {
+                last = values[i];
+                count = 0;
+            } else if (!Double.isNaN(last) && count < maxCount) {
+                values[i] = last;
+                count++;
+            }
         }
-        return cookies;
     }
 
 
     /**
-     * Returns the crumb to add to get request
-     * @return      the crumb token
+     * Calculates price changes from close to close in a single pass, leaving the first change undefined
+     * This is only needed for padded frames, where changes must be computed after holidays are filled down.
+     * @param close         the close prices in date order, null if no changes are required
+     * @param change        the array to populate with absolute changes, null if not selected
+     * @param changePercent the array to populate with percent changes, null if not selected
      */
-    private synchronized String getCrumb() {
-        if (crumb == null) {
-            final Map<String,String> cookies = getCookies();
-            this.crumb = HttpClient.getDefault().<String>doGet(httpRequest -> {
-                httpRequest.setUrl(CRUMB_URL);
-                httpRequest.setReadTimeout((int)readTimeout.getSeconds() * 1000);
-                httpRequest.setConnectTimeout((int)connectTimeout.getSeconds() * 1000);
-                httpRequest.getCookies().putAll(cookies);
-                httpRequest.setResponseHandler(response -> {
-                    try {
-                        final String crumb = IO.readText(response.getStream());
-                        return Optional.of(crumb.trim());
-                    } catch (IOException ex) {
-                        throw new HttpException(httpRequest, "Failed to load data from url", ex);
-                    }
-                });
-            }).orElseThrow(() -> new YahooException("Failed to initialize crumb token for historical quote request"));
+    private static void calculateChanges(double[] close, double[] change, double[] changePercent) {
+        if (close != null && (change != null || changePercent != null)) {
+            for (int i=0; i<close.length; ++i) {
+                if (change != null) change[i] = i > 0 ? close[i] - close[i-1] : Double.NaN;
+                if (changePercent != null) changePercent[i] = i > 0 ? (close[i] / close[i-1]) - 1d : Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Called internally to construct the query URL.
+     * @param symbol    the asset symbol
+     * @param start     the start date
+     * @param end       the end date
+     * @param crumb     the crumb token for the session
+     * @return          the query url
+     */
+    private URL createURL(String symbol, LocalDate start, LocalDate end, String crumb) {
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("The start date must be after the end date");
+        } else {
+            try {
+                final long startDate = start.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+                final long endDate = end.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+                return new URL(String.format(QUOTE_URL, symbol, startDate, endDate, crumb));
+            } catch (MalformedURLException ex) {
+                throw new YahooException("Failed to create quote URL for " + symbol, ex);
+            }
         }
-        return crumb;
     }
 
 
     /**
-     * The options for this source
+     * The options for this source, which are also accepted by the YahooQuoteStoreSource
      */
     public class Options implements DataFrameSource.Options<LocalDate,YahooField> {
 
@@ -324,6 +710,9 @@ public class YahooQuoteHistorySource extends DataFrameSource<LocalDate,YahooFiel
         private LocalDate endDate = LocalDate.now();
         private boolean paddedHolidays;
         private boolean dividendAdjusted;
+        private Set<YahooField> fields = new LinkedHashSet<>();
+        private int partitionYears;
+        private Semaphore permits;
 
         @Override
         public void validate() {
@@ -331,6 +720,41 @@ public class YahooQuoteHistorySource extends DataFrameSource<LocalDate,YahooFiel
             Asserts.assertTrue(startDate != null, "The start date cannot be null");
             Asserts.assertTrue(endDate != null, "The end date cannot be null");
             Asserts.assertTrue(startDate.isBefore(endDate), "The start date must be < end date");
+            Asserts.assertTrue(Collect.asList(YahooQuoteHistorySource.fields).containsAll(fields), "Unsupported fields in " + fields);
+            Asserts.assertTrue(partitionYears >= 0, "The partition years must be >= 0");
+        }
+
+        /**
+         * Returns true if the field is included in the frame for these options
+         * @param field the field to check
+         * @return      true if no projection is specified, or the field is in the projection
+         */
+        boolean isSelected(YahooField field) {
+            return fields.isEmpty() || fields.contains(field);
+        }
+
+        /**
+         * Returns the instrument ticker for these options
+         * @return  the ticker
+         */
+        String getTicker() {
+            return ticker;
+        }
+
+        /**
+         * Returns the start date for these options
+         * @return  the start date
+         */
+        LocalDate getStartDate() {
+            return startDate;
+        }
+
+        /**
+         * Returns the end date for these options
+         * @return  the end date
+         */
+        LocalDate getEndDate() {
+            return endDate;
         }
 
         /**
@@ -401,6 +825,37 @@ public class YahooQuoteHistorySource extends DataFrameSource<LocalDate,YahooFiel
             this.dividendAdjusted = dividendAdjusted;
             return this;
         }
+
+        /**
+         * Sets the fields to include in the result, which defaults to all fields if none are specified
+         * @param fields    the fields to include in the result
+         * @return          these options
+         */
+        public Options withFields(Iterable<YahooField> fields) {
+            this.fields.addAll(Collect.asList(fields));
+            return this;
+        }
+
+        /**
+         * Sets the fields to include in the result, which defaults to all fields if none are specified
+         * @param fields    the fields to include in the result
+         * @return          these options
+         */
+        public Options withFields(YahooField... fields) {
+            this.fields.addAll(Arrays.asList(fields));
+            return this;
+        }
+
+        /**
+         * Sets the max number of years per request, so that long date ranges are downloaded in parallel partitions
+         * Partitions are downloaded on a bounded executor of 8 threads shared by all sources
+         * @param partitionYears    the years per partition, 0 to download the entire range in one request
+         * @return                  these options
+         */
+        public Options withPartitionYears(int partitionYears) {
+            this.partitionYears = partitionYears;
+            return this;
+        }
     }
 
 
@@ -421,5 +876,11 @@ public class YahooQuoteHistorySource extends DataFrameSource<LocalDate,YahooFiel
             });
             frame.out().print();
         });
+        source.read(tickers, 3, options -> {
+            options.withStartDate(start);
+            options.withEndDate(end);
+        }, (ticker, frame) -> {
+            IO.println("Loaded " + frame.rowCount() + " bars for " + ticker);
+        });
     }
 }
@@ -19,6 +19,8 @@ import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -31,6 +33,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
 import com.univocity.parsers.common.ParsingContext;
@@ -57,9 +61,14 @@ import com.zavtech.morpheus.util.http.HttpClient;
  */
 public class YahooQuoteLiveSource extends DataFrameSource<String,YahooField,YahooQuoteLiveSource.Options> {
 
+    private static final int MAX_TICKER_CHARS = 1500;
+
     private static final Map<YahooField,String> codeMap = new LinkedHashMap<>();
 
+    private static final YahooFetchPipeline defaultPipeline = new YahooFetchPipeline("YahooQuoteLiveSource", 8);
+
     private String urlTemplate;
+    private YahooFetchPipeline pipeline;
 
     /**
      * Static initializer
@@ -120,7 +129,17 @@ public class YahooQuoteLiveSource extends DataFrameSource<String,YahooField,Yaho
      * @param urlTemplate   the URL template
      */
     public YahooQuoteLiveSource(String urlTemplate) {
+        this(urlTemplate, defaultPipeline);
+    }
+
+    /**
+     * Constructor
+     * @param urlTemplate   the URL template
+     * @param pipeline      the pipeline used to load batches of tickers concurrently
+     */
+    public YahooQuoteLiveSource(String urlTemplate, YahooFetchPipeline pipeline) {
         this.urlTemplate = urlTemplate;
+        this.pipeline = pipeline;
     }
 
     /**
@@ -135,32 +154,98 @@ public class YahooQuoteLiveSource extends DataFrameSource<String,YahooField,Yaho
     @Override
     public DataFrame<String,YahooField> read(Consumer<Options> configurator) throws DataFrameException {
         try {
-            final StringBuilder url = new StringBuilder(urlTemplate);
             final Options options = initOptions(new Options(), configurator);
-            final Map<String,String> tickerMap = appendTickers(url, options);
-            final List<YahooField> fieldList = appendFields(url, options);
-            final URL queryUrl = new URL(url.toString());
-            return HttpClient.getDefault().<DataFrame<String,YahooField>>doGet(httpRequest -> {
-                httpRequest.setUrl(queryUrl);
-                httpRequest.getHeaders().putAll(YahooFinance.getRequestHeaders());
-                httpRequest.setResponseHandler(response -> {
-                    final InputStream stream = response.getStream();
-                    final BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-                    final DataFrame<String,YahooField> frame = createFrame(tickerMap.keySet(), fieldList);
-                    final YahooContentProcessor processor = new YahooContentProcessor(fieldList, frame);
-                    final CsvParserSettings settings = createSettings(processor);
-                    final CsvParser parser = new CsvParser(settings);
-                    parser.parse(reader);
-                    return Optional.of(frame);
-                });
-            }).orElseGet(() -> {
-                throw new RuntimeException("No DataFrame loaded for query URL: " + queryUrl);
-            });
+            final Map<String,String> tickerMap = createTickerMap(options);
+            final List<YahooField> fieldList = createFieldList(options);
+            final DataFrame<String,YahooField> frame = createFrame(tickerMap.keySet(), fieldList);
+            final List<List<String>> batches = createBatches(tickerMap.keySet(), options.batchSize, MAX_TICKER_CHARS);
+            if (batches.size() == 1) {
+                load(batches.get(0), fieldList, frame);
+                return frame;
+            } else {
+                final List<CompletableFuture<DataFrame<String,YahooField>>> futures = new ArrayList<>(batches.size());
+                for (int i=0; i<batches.size(); ++i) {
+                    final List<String> batch = batches.get(i);
+                    futures.add(pipeline.submit("Batch-" + i, () -> load(batch, fieldList, frame)));
+                }
+                try {
+                    for (CompletableFuture<DataFrame<String,YahooField>> future : futures) {
+                        try {
+                            future.get();
+                        } catch (ExecutionException ex) {
+                            throw new YahooException("Failed to load batch of live quotes", ex.getCause());
+                        }
+                    }
+                    return frame;
+                } finally {
+                    futures.forEach(future -> future.cancel(true));
+                }
+            }
         } catch (Exception ex) {
             throw new DataFrameException("Failed to read quotes from Yahoo Finance: " + ex.getMessage(), ex);
         }
     }
 
+
+    /**
+     * Loads quotes for a batch of tickers and writes them into the rows of the result frame for those tickers
+     * Batches write to disjoint rows of a frame that is fully allocated up front, so they can be loaded concurrently.
+     * @param symbols   the Yahoo Finance symbols for the batch
+     * @param fieldList the fields to load
+     * @param frame     the pre-sized result frame
+     * @return          the result frame
+     * @throws Exception    if the batch fails to load
+     */
+    private DataFrame<String,YahooField> load(List<String> symbols, List<YahooField> fieldList, DataFrame<String,YahooField> frame) throws Exception {
+        final StringBuilder url = new StringBuilder(urlTemplate);
+        appendTickers(url, symbols);
+        appendFields(url, fieldList);
+        final URL queryUrl = new URL(url.toString());
+        return HttpClient.getDefault().<DataFrame<String,YahooField>>doGet(httpRequest -> {
+            httpRequest.setUrl(queryUrl);
+            httpRequest.getHeaders().putAll(YahooFinance.getRequestHeaders());
+            httpRequest.setResponseHandler(response -> {
+                final InputStream stream = response.getStream();
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+                final YahooContentProcessor processor = new YahooContentProcessor(fieldList, frame);
+                final CsvParserSettings settings = createSettings(processor);
+                final CsvParser parser = new CsvParser(settings);
+                parser.parse(reader);
+                return Optional.of(frame);
+            });
+        }).orElseGet(() -> {
+            throw new RuntimeException("No DataFrame loaded for query URL: " + queryUrl);
+        });
+    }
+
+
+    /**
+     * Returns the Yahoo Finance symbols split into batches that are bounded in count and in URL length
+     * @param symbols   the Yahoo Finance symbols
+     * @param batchSize the max number of symbols per batch
+     * @param maxChars  the max number of characters of symbols and separators per batch
+     * @return          the list of batches, which always has at least one batch
+     */
+    static List<List<String>> createBatches(Collection<String> symbols, int batchSize, int maxChars) {
+        final List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        int chars = 0;
+        for (String symbol : symbols) {
+            final int length = symbol.length() + (batch.isEmpty() ? 0 : 1);
+            if (!batch.isEmpty() && (batch.size() >= batchSize || chars + length > maxChars)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                chars = symbol.length();
+            } else {
+                chars += length;
+            }
+            batch.add(symbol);
+        }
+        batches.add(batch);
+        return batches;
+    }
+
+
     /**
      * Returns a newly created DataFrame for tickers and fields
      * @param tickers   the tickers for frame
@@ -192,25 +277,17 @@ public class YahooQuoteLiveSource extends DataFrameSource<String,YahooField,Yaho
     }
 
     /**
-     * Appends a sequence of tickers to the url
-     * @param url       the url to append to
+     * Returns the map of Yahoo Finance symbols to tickers, where fx rates are suffixed with =X
      * @param request   the request descriptor
-     * @return          the apply of captured tickers
+     * @return          the map of symbols to tickers
      */
-    private Map<String,String> appendTickers(StringBuilder url, Options request) {
-        url.append("s=");
+    private Map<String,String> createTickerMap(Options request) {
         final Set<String> tickers = request.tickers;
         final Map<String,String> tickerMap = new LinkedHashMap<>(tickers.size());
-        final int length = url.length();
         tickers.forEach(ticker -> {
-            url.append(url.length() > length ? "+" : "");
             if (isFxRate(ticker)) {
-                url.append(ticker);
-                url.append("=X");
                 tickerMap.put(ticker + "=X", ticker);
-            }
-            else {
-                url.append(ticker);
+            } else {
                 tickerMap.put(ticker, ticker);
             }
         });
@@ -218,27 +295,47 @@ public class YahooQuoteLiveSource extends DataFrameSource<String,YahooField,Yaho
     }
 
     /**
-     * Appends a sequence of fields to the url
-     * @param url       the url to append to
+     * Returns the list of fields for the request, which defaults to all supported fields
      * @param request   the request descriptor
      * @return          the list of fields
      */
-    private List<YahooField> appendFields(StringBuilder url, Options request) {
-        url.append("&f=s");
+    private List<YahooField> createFieldList(Options request) {
         final Set<YahooField> fields = request.fields.size() > 0 ? request.fields : codeMap.keySet();
         final List<YahooField> fieldList = new ArrayList<>(fields.size());
         fields.forEach(field -> {
-            final String code = codeMap.getOrDefault(field, null);
-            if (code == null) {
+            if (!codeMap.containsKey(field)) {
                 throw new DataFrameException("Quote field not supported for live queries: " + field);
             } else {
-                url.append(code);
                 fieldList.add(field);
             }
         });
         return fieldList;
     }
 
+    /**
+     * Appends a sequence of tickers to the url
+     * @param url       the url to append to
+     * @param symbols   the Yahoo Finance symbols
+     */
+    private void appendTickers(StringBuilder url, List<String> symbols) {
+        url.append("s=");
+        final int length = url.length();
+        symbols.forEach(symbol -> {
+            url.append(url.length() > length ? "+" : "");
+            url.append(symbol);
+        });
+    }
+
+    /**
+     * Appends a sequence of fields to the url
+     * @param url       the url to append to
+     * @param fieldList the list of fields
+     */
+    private void appendFields(StringBuilder url, List<YahooField> fieldList) {
+        url.append("&f=s");
+        fieldList.forEach(field -> url.append(codeMap.get(field)));
+    }
+
     /**
      * Returns true if the ticker represents an fx rate
      * @param ticker    the ticker
@@ -260,12 +357,13 @@ public class YahooQuoteLiveSource extends DataFrameSource<String,YahooField,Yaho
     }
 
     /**
-     * The CSV row processor
+     * The CSV row processor, which writes each cell through a writer typed for its field at cached ordinals
      */
     private class YahooContentProcessor implements RowProcessor {
 
         private List<YahooField> fieldList;
         private DataFrame<String,YahooField> frame;
+        private CellWriter[] writers;
         private YahooFinanceParser parser = new YahooFinanceParser();
 
         /**
@@ -276,6 +374,29 @@ public class YahooQuoteLiveSource extends DataFrameSource<String,YahooField,Yaho
         private YahooContentProcessor(List<YahooField> fieldList, DataFrame<String,YahooField> frame) {
             this.fieldList = fieldList;
             this.frame = frame;
+            this.writers = new CellWriter[fieldList.size()];
+            for (int i=0; i<writers.length; ++i) {
+                this.writers[i] = createWriter(fieldList.get(i));
+            }
+        }
+
+        /**
+         * Returns a writer for the field that parses text directly to the field data type
+         * @param field the field to write
+         * @return      the writer for field
+         */
+        private CellWriter createWriter(YahooField field) {
+            final int colOrdinal = frame.cols().ordinalOf(field, true);
+            final Class<?> dataType = field.getDataType();
+            if (dataType == Double.class) {
+                return (rowOrdinal, text) -> frame.data().setDouble(rowOrdinal, colOrdinal, parser.parseDouble(text));
+            } else if (dataType == LocalDate.class) {
+                return (rowOrdinal, text) -> frame.data().setValue(rowOrdinal, colOrdinal, parser.parseDate(text));
+            } else if (dataType == LocalTime.class) {
+                return (rowOrdinal, text) -> frame.data().setValue(rowOrdinal, colOrdinal, parser.parseTime(text));
+            } else {
+                return (rowOrdinal, text) -> frame.data().setValue(rowOrdinal, colOrdinal, parser.parse(text));
+            }
         }
 
         @Override
@@ -288,12 +409,11 @@ public class YahooQuoteLiveSource extends DataFrameSource<String,YahooField,Yaho
             YahooField field = null;
             String text = null;
             try {
-                final String ticker = row[0];
+                final int rowOrdinal = frame.rows().ordinalOf(row[0], true);
                 for (int i=1; i<row.length; ++i) {
                     field = fieldList.get(i - 1);
                     text = row[i];
-                    final Object value = parser.parse(text);
-                    frame.data().setValue(ticker, field, value);
+                    writers[i - 1].write(rowOrdinal, text);
                 }
             } catch (Exception ex) {
                 throw new RuntimeException("Failed to parse line: " + context.currentLine() + ", " +field + "=" + text , ex);
@@ -307,6 +427,20 @@ public class YahooQuoteLiveSource extends DataFrameSource<String,YahooField,Yaho
     }
 
 
+    /**
+     * A writer that parses the text for a cell and writes it to the result frame
+     */
+    private interface CellWriter {
+
+        /**
+         * Parses the text and writes it to the cell at the row ordinal
+         * @param rowOrdinal    the row ordinal in the result frame
+         * @param text          the text to parse
+         */
+        void write(int rowOrdinal, String text);
+    }
+
+
     /**
      * The options for this DataFrameSource
      */
@@ -314,11 +448,22 @@ public class YahooQuoteLiveSource extends DataFrameSource<String,YahooField,Yaho
 
         private Set<String> tickers = new LinkedHashSet<>();
         private Set<YahooField> fields = new LinkedHashSet<>();
+        private int batchSize = 200;
 
 
         @Override
         public void validate() {
             Asserts.check(tickers.size() > 0, "At least one ticker must be specified");
+            Asserts.check(batchSize > 0, "The batch size must be > 0");
+        }
+
+        /**
+         * Sets the max number of tickers per request, beyond which tickers are loaded in concurrent batches
+         * @param batchSize the max number of tickers per request
+         */
+        public Options withBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
         }
 
         /**
@@ -0,0 +1,332 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.util.Asserts;
+import com.zavtech.morpheus.util.Collect;
+import com.zavtech.morpheus.util.IO;
+
+/**
+ * A polling engine that periodically loads live quotes for a set of tickers and fields, and publishes only the cells that changed.
+ *
+ * The poller keeps a single resident snapshot of the latest quotes. Each poll compares the new quotes against the
+ * snapshot cell by cell, updates the changed cells in place, and publishes the list of changes to every subscriber,
+ * so that consumers process only what moved rather than whole frames. The first poll publishes every non-null cell as
+ * a change from null, so that subscribers start from a complete picture. Polls run on a single daemon thread with a
+ * fixed delay between them, so polls never overlap and a slow response delays rather than stacks the next poll.
+ *
+ * Any use of the extracted data from this software should adhere to Yahoo Finance Terms and Conditions.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooQuotePoller implements AutoCloseable {
+
+    private YahooQuoteLiveSource source;
+    private Set<String> tickers;
+    private Set<YahooField> fields;
+    private Duration interval;
+    private DataFrame<String,YahooField> snapshot;
+    private ScheduledExecutorService executor;
+    private List<Consumer<List<Change>>> subscribers = new CopyOnWriteArrayList<>();
+
+
+    /**
+     * Constructor
+     * @param source    the live quote source to poll
+     * @param tickers   the tickers to poll
+     * @param fields    the fields to poll
+     * @param interval  the delay between the end of one poll and the start of the next
+     */
+    public YahooQuotePoller(YahooQuoteLiveSource source, Iterable<String> tickers, Iterable<YahooField> fields, Duration interval) {
+        Asserts.notNull(source, "The live quote source cannot be null");
+        Asserts.assertTrue(interval != null && !interval.isNegative() && !interval.isZero(), "The poll interval must be > 0");
+        this.source = source;
+        this.tickers = new LinkedHashSet<>(Collect.asList(tickers));
+        this.fields = new LinkedHashSet<>(Collect.asList(fields));
+        this.interval = interval;
+        Asserts.assertTrue(this.tickers.size() > 0, "At least one ticker must be specified");
+        Asserts.assertTrue(this.fields.size() > 0, "At least one field must be specified");
+    }
+
+
+    /**
+     * Returns the tickers polled by this poller
+     * @return  the tickers
+     */
+    public Set<String> getTickers() {
+        return tickers;
+    }
+
+    /**
+     * Returns the fields polled by this poller
+     * @return  the fields
+     */
+    public Set<YahooField> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the delay between polls
+     * @return  the poll interval
+     */
+    public Duration getInterval() {
+        return interval;
+    }
+
+
+    /**
+     * Returns a copy of the latest snapshot of quotes
+     * @return  the latest snapshot, empty if no poll has completed yet
+     */
+    public synchronized Optional<DataFrame<String,YahooField>> getSnapshot() {
+        return snapshot == null ? Optional.empty() : Optional.of(snapshot.copy());
+    }
+
+
+    /**
+     * Subscribes a consumer to receive the changes from each poll, called on the polling thread
+     * @param subscriber    the subscriber to receive lists of changes
+     * @return              this poller
+     */
+    public YahooQuotePoller subscribe(Consumer<List<Change>> subscriber) {
+        this.subscribers.add(subscriber);
+        return this;
+    }
+
+    /**
+     * Unsubscribes a consumer from this poller
+     * @param subscriber    the subscriber to remove
+     * @return              this poller
+     */
+    public YahooQuotePoller unsubscribe(Consumer<List<Change>> subscriber) {
+        this.subscribers.remove(subscriber);
+        return this;
+    }
+
+
+    /**
+     * Starts polling on a background daemon thread, with the first poll made immediately
+     * @return  this poller
+     * @throws YahooException   if this poller has already been started
+     */
+    public synchronized YahooQuotePoller start() {
+        if (executor != null) {
+            throw new YahooException("The quote poller has already been started");
+        } else {
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "YahooQuotePoller");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor.scheduleWithFixedDelay(() -> {
+                try {
+                    poll();
+                } catch (Exception ex) {
+                    IO.println("Failed to poll live quotes from Yahoo Finance: " + ex.getMessage());
+                }
+            }, 0L, interval.toMillis(), TimeUnit.MILLISECONDS);
+            return this;
+        }
+    }
+
+
+    /**
+     * Stops polling, after which this poller cannot be restarted
+     */
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Loads the latest quotes, and publishes the changes relative to the snapshot
+     * @return  the changes for this poll
+     */
+    public List<Change> poll() {
+        final DataFrame<String,YahooField> quotes = source.read(options -> {
+            options.withTickers(tickers);
+            options.withFields(fields);
+        });
+        return publish(update(quotes));
+    }
+
+
+    /**
+     * Updates the resident snapshot with the quotes specified, and returns the cells that changed
+     * Double fields are compared as primitives, so only changed cells are boxed.
+     * @param quotes    the latest quotes
+     * @return          the changes relative to the snapshot
+     */
+    synchronized List<Change> update(DataFrame<String,YahooField> quotes) {
+        final List<Change> changes = new ArrayList<>();
+        final int rowCount = quotes.rowCount();
+        final int colCount = quotes.colCount();
+        if (snapshot == null) {
+            this.snapshot = quotes;
+            for (int j=0; j<colCount; ++j) {
+                final YahooField field = quotes.cols().key(j);
+                for (int i=0; i<rowCount; ++i) {
+                    final Object value = quotes.data().getValue(i, j);
+                    if (value != null && !(value instanceof Double && Double.isNaN((Double)value))) {
+                        changes.add(new Change(quotes.rows().key(i), field, null, value));
+                    }
+                }
+            }
+        } else {
+            for (int j=0; j<colCount; ++j) {
+                final YahooField field = quotes.cols().key(j);
+                final int snapshotCol = snapshot.cols().ordinalOf(field);
+                final boolean primitive = field.getDataType() == Double.class;
+                for (int i=0; i<rowCount; ++i) {
+                    final String ticker = quotes.rows().key(i);
+                    final int snapshotRow = snapshot.rows().ordinalOf(ticker);
+                    if (primitive) {
+                        final double oldValue = snapshot.data().getDouble(snapshotRow, snapshotCol);
+                        final double newValue = quotes.data().getDouble(i, j);
+                        if (Double.compare(oldValue, newValue) != 0) {
+                            snapshot.data().setDouble(snapshotRow, snapshotCol, newValue);
+                            changes.add(new Change(ticker, field, oldValue, newValue));
+                        }
+                    } else {
+                        final Object oldValue = snapshot.data().getValue(snapshotRow, snapshotCol);
+                        final Object newValue = quotes.data().getValue(i, j);
+                        if (!Objects.equals(oldValue, newValue)) {
+                            snapshot.data().setValue(snapshotRow, snapshotCol, newValue);
+                            changes.add(new Change(ticker, field, oldValue, newValue));
+                        }
+                    }
+                }
+            }
+        }
+        return changes;
+    }
+
+
+    /**
+     * Publishes the changes to all subscribers, unless there are none
+     * A failing subscriber does not prevent the other subscribers from receiving the changes.
+     * @param changes   the changes to publish
+     * @return          the changes
+     */
+    private List<Change> publish(List<Change> changes) {
+        if (!changes.isEmpty()) {
+            final List<Change> published = Collections.unmodifiableList(changes);
+            this.subscribers.forEach(subscriber -> {
+                try {
+                    subscriber.accept(published);
+                } catch (Exception ex) {
+                    IO.println("Quote poller subscriber failed: " + ex.getMessage());
+                }
+            });
+        }
+        return changes;
+    }
+
+
+    /**
+     * A change to a single cell of the quote snapshot
+     */
+    public static class Change {
+
+        private String ticker;
+        private YahooField field;
+        private Object oldValue;
+        private Object newValue;
+
+        /**
+         * Constructor
+         * @param ticker    the ticker
+         * @param field     the field
+         * @param oldValue  the previous value, null if none
+         * @param newValue  the new value
+         */
+        Change(String ticker, YahooField field, Object oldValue, Object newValue) {
+            this.ticker = ticker;
+            this.field = field;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        /**
+         * Returns the ticker for this change
+         * @return  the ticker
+         */
+        public String getTicker() {
+            return ticker;
+        }
+
+        /**
+         * Returns the field for this change
+         * @return  the field
+         */
+        public YahooField getField() {
+            return field;
+        }
+
+        /**
+         * Returns the previous value of the cell
+         * @return  the previous value, null if none
+         */
+        public Object getOldValue() {
+            return oldValue;
+        }
+
+        /**
+         * Returns the new value of the cell
+         * @return  the new value
+         */
+        public Object getNewValue() {
+            return newValue;
+        }
+
+        @Override()
+        public String toString() {
+            return ticker + "." + field + ": " + oldValue + " -> " + newValue;
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        final List<String> tickers = Arrays.asList("AAPL", "MSFT", "GOOGL", "GBPUSD");
+        final List<YahooField> fields = Arrays.asList(YahooField.PX_BID, YahooField.PX_ASK, YahooField.PX_LAST, YahooField.PX_VOLUME);
+        try (YahooQuotePoller poller = new YahooQuotePoller(new YahooQuoteLiveSource(), tickers, fields, Duration.ofSeconds(5))) {
+            poller.subscribe(changes -> changes.forEach(IO::println));
+            poller.start();
+            Thread.sleep(60000);
+        }
+    }
+}
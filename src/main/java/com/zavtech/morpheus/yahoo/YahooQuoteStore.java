@@ -0,0 +1,497 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * A local binary store of daily bars with one memory mapped file per ticker, laid out in fixed width columns.
+ *
+ * Each file starts with a 64 byte header followed by an epoch-day column of ints and then open, high, low, close,
+ * volume and split ratio columns of doubles, all in little endian order. Columns are sized to a capacity that exceeds
+ * the bar count, so bars can be appended in place, and the bar count in the header is only updated once the column
+ * values have been written, which means a concurrent reader never observes a partially written bar. Prices are
+ * stored unadjusted, so a single file serves both split and dividend adjusted and unadjusted requests.
+ *
+ * Mapped buffers are never exposed outside this store, since bars are copied out of the buffers into heap arrays, and
+ * the mappings are left to be released when the buffers are garbage collected, as forcibly unmapping a buffer makes any
+ * later access to it crash the JVM rather than fail with an exception.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooQuoteStore {
+
+    private static final int MAGIC = 0x59515354;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int COLUMN_COUNT = 6;
+    private static final int CAPACITY_BLOCK = 256;
+    private static final int OFFSET_CAPACITY = 8;
+    private static final int OFFSET_COUNT = 12;
+    private static final int OFFSET_START = 16;
+    private static final int OFFSET_END = 24;
+
+    private File directory;
+
+
+    /**
+     * Constructor
+     * @param directory the directory in which to store the ticker files
+     */
+    public YahooQuoteStore(File directory) {
+        this.directory = directory;
+    }
+
+
+    /**
+     * Returns the directory for this store
+     * @return  the store directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+
+    /**
+     * Returns true if this store holds bars for the ticker specified
+     * @param ticker    the security ticker
+     * @return          true if bars exist for ticker
+     */
+    public boolean contains(String ticker) {
+        return getFile(ticker).exists();
+    }
+
+
+    /**
+     * Deletes all bars held for the ticker specified
+     * @param ticker    the security ticker
+     * @return          true if bars were deleted
+     */
+    public boolean delete(String ticker) {
+        return getFile(ticker).delete();
+    }
+
+
+    /**
+     * Returns the first date of the range that has been requested from Yahoo Finance for the ticker
+     * @param ticker    the security ticker
+     * @return          the optional start date of range covered by this store
+     */
+    public Optional<LocalDate> getStartDate(String ticker) {
+        return Optional.ofNullable(readHeader(ticker)).map(header -> header.start);
+    }
+
+
+    /**
+     * Returns the last date of the range that has been requested from Yahoo Finance for the ticker
+     * @param ticker    the security ticker
+     * @return          the optional end date of range covered by this store
+     */
+    public Optional<LocalDate> getEndDate(String ticker) {
+        return Optional.ofNullable(readHeader(ticker)).map(header -> header.end);
+    }
+
+
+    /**
+     * Returns a writer that appends bars to the file for the ticker specified
+     * @param ticker    the security ticker
+     * @return          the writer for ticker, which should be closed after use
+     */
+    public Writer writer(String ticker) {
+        return new Writer(ticker);
+    }
+
+
+    /**
+     * Returns the file for the ticker specified
+     * @param ticker    the security ticker
+     * @return          the file for ticker
+     */
+    File getFile(String ticker) {
+        final StringBuilder name = new StringBuilder();
+        for (char c : ticker.toCharArray()) {
+            if (Character.isLetterOrDigit(c) || c == '.' || c == '-') {
+                name.append(Character.toUpperCase(c));
+            } else {
+                name.append('_').append(Integer.toHexString(c));
+            }
+        }
+        return new File(directory, name.append(".bars").toString());
+    }
+
+
+    /**
+     * Returns the header of the file for the ticker, null if no valid file exists
+     * @param ticker    the security ticker
+     * @return          the header or null
+     */
+    Header readHeader(String ticker) {
+        final File file = getFile(ticker);
+        if (!file.exists()) {
+            return null;
+        } else {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                if (channel.size() < HEADER_SIZE) {
+                    return null;
+                } else {
+                    return Header.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE));
+                }
+            } catch (IOException ex) {
+                throw new YahooException("Failed to read quote store header from " + file, ex);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the bars for the ticker that fall within the inclusive date range, null if no bars are stored
+     * @param ticker    the security ticker
+     * @param start     the start date, inclusive
+     * @param end       the end date, inclusive
+     * @return          the bars within date range, or null
+     */
+    YahooQuoteBars read(String ticker, LocalDate start, LocalDate end) {
+        final File file = getFile(ticker);
+        if (!file.exists()) {
+            return null;
+        } else {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                final Header header = Header.read(buffer);
+                if (header == null || fileSize(header.capacity) > channel.size()) {
+                    return null;
+                } else {
+                    final int from = ceiling(buffer, header.count, (int)start.toEpochDay());
+                    final int to = ceiling(buffer, header.count, (int)end.toEpochDay() + 1);
+                    return readBars(buffer, header.capacity, from, Math.max(from, to));
+                }
+            } catch (IOException ex) {
+                throw new YahooException("Failed to read quote store file " + file, ex);
+            }
+        }
+    }
+
+
+    /**
+     * Replaces all bars for the ticker, writing a new file which is then moved into place
+     * @param ticker    the security ticker
+     * @param start     the start date of range requested from Yahoo Finance
+     * @param end       the end date of range requested from Yahoo Finance
+     * @param bars      the bars sorted by date
+     */
+    void write(String ticker, LocalDate start, LocalDate end, YahooQuoteBars bars) {
+        final File file = getFile(ticker);
+        final File temp = new File(directory, file.getName() + ".tmp");
+        try {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Unable to create quote store directory: " + directory);
+            }
+            final int capacity = capacityFor(bars.size());
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(OFFSET_CAPACITY, capacity);
+                buffer.putLong(OFFSET_START, start.toEpochDay());
+                buffer.putLong(OFFSET_END, end.toEpochDay());
+                writeBars(buffer, capacity, 0, bars);
+                buffer.putInt(OFFSET_COUNT, bars.size());
+                buffer.force();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            temp.delete();
+            throw new YahooException("Failed to write quote store file " + file, ex);
+        }
+    }
+
+
+    /**
+     * Returns the index of the first bar with a date >= the date specified
+     * @param buffer    the mapped file buffer
+     * @param count     the number of bars in file
+     * @param date      the date in epoch days
+     * @return          the index of first bar on or after date, or count if none
+     */
+    private static int ceiling(MappedByteBuffer buffer, int count, int date) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int value = buffer.getInt(HEADER_SIZE + mid * 4);
+            if (value < date) {
+                low = mid + 1;
+            } else if (value > date) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Returns the bars read from the mapped buffer for the index range specified
+     * @param buffer    the mapped file buffer
+     * @param capacity  the column capacity of file
+     * @param from      the index of first bar, inclusive
+     * @param to        the index of last bar, exclusive
+     * @return          the bars read from buffer
+     */
+    private static YahooQuoteBars readBars(MappedByteBuffer buffer, int capacity, int from, int to) {
+        final int size = to - from;
+        final int[] dates = new int[size];
+        final double[][] columns = new double[COLUMN_COUNT][size];
+        for (int i=0; i<size; ++i) {
+            dates[i] = buffer.getInt(HEADER_SIZE + (from + i) * 4);
+        }
+        for (int j=0; j<COLUMN_COUNT; ++j) {
+            final double[] values = columns[j];
+            final int offset = columnOffset(capacity, j) + from * 8;
+            for (int i=0; i<size; ++i) {
+                values[i] = buffer.getDouble(offset + i * 8);
+            }
+        }
+        return new YahooQuoteBars(size, dates, columns[0], columns[1], columns[2], columns[3], columns[4], columns[5]);
+    }
+
+
+    /**
+     * Writes bars into the mapped buffer starting at the index specified
+     * @param buffer    the mapped file buffer
+     * @param capacity  the column capacity of file
+     * @param from      the index at which to write the first bar
+     * @param bars      the bars to write
+     */
+    private static void writeBars(MappedByteBuffer buffer, int capacity, int from, YahooQuoteBars bars) {
+        final int size = bars.size();
+        for (int i=0; i<size; ++i) {
+            final int index = from + i;
+            buffer.putInt(HEADER_SIZE + index * 4, bars.getDate(i));
+            buffer.putDouble(columnOffset(capacity, 0) + index * 8, bars.getOpen(i));
+            buffer.putDouble(columnOffset(capacity, 1) + index * 8, bars.getHigh(i));
+            buffer.putDouble(columnOffset(capacity, 2) + index * 8, bars.getLow(i));
+            buffer.putDouble(columnOffset(capacity, 3) + index * 8, bars.getClose(i));
+            buffer.putDouble(columnOffset(capacity, 4) + index * 8, bars.getVolume(i));
+            buffer.putDouble(columnOffset(capacity, 5) + index * 8, bars.getSplitRatio(i));
+        }
+    }
+
+
+    /**
+     * Returns the byte offset of the double column specified
+     * @param capacity  the column capacity of file
+     * @param column    the column index, 0 for open through 5 for split ratio
+     * @return          the byte offset of column
+     */
+    private static int columnOffset(int capacity, int column) {
+        return HEADER_SIZE + capacity * 4 + column * capacity * 8;
+    }
+
+
+    /**
+     * Returns the file size for the capacity specified
+     * @param capacity  the column capacity
+     * @return          the file size in bytes
+     */
+    private static long fileSize(int capacity) {
+        return HEADER_SIZE + (long)capacity * 4L + (long)capacity * 8L * COLUMN_COUNT;
+    }
+
+
+    /**
+     * Returns the column capacity to hold at least the number of bars specified with some room to append
+     * @param count     the number of bars
+     * @return          the column capacity
+     */
+    private static int capacityFor(int count) {
+        final int required = count + Math.max(CAPACITY_BLOCK, count / 4);
+        return ((required + CAPACITY_BLOCK - 1) / CAPACITY_BLOCK) * CAPACITY_BLOCK;
+    }
+
+
+    /**
+     * The header of a ticker file
+     */
+    static class Header {
+
+        private int capacity;
+        private int count;
+        private LocalDate start;
+        private LocalDate end;
+
+        /**
+         * Returns the header read from the buffer, null if the buffer does not start with a valid header
+         * @param buffer    the mapped file buffer
+         * @return          the header, or null
+         */
+        static Header read(MappedByteBuffer buffer) {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                return null;
+            } else {
+                final Header header = new Header();
+                header.capacity = buffer.getInt(OFFSET_CAPACITY);
+                header.count = buffer.getInt(OFFSET_COUNT);
+                header.start = LocalDate.ofEpochDay(buffer.getLong(OFFSET_START));
+                header.end = LocalDate.ofEpochDay(buffer.getLong(OFFSET_END));
+                return header;
+            }
+        }
+
+        /**
+         * Returns the number of bars in file
+         * @return  the bar count
+         */
+        int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the start date of range requested from Yahoo Finance
+         * @return  the start date
+         */
+        LocalDate getStart() {
+            return start;
+        }
+
+        /**
+         * Returns the end date of range requested from Yahoo Finance
+         * @return  the end date
+         */
+        LocalDate getEnd() {
+            return end;
+        }
+    }
+
+
+    /**
+     * A writer that appends bars to the file for a single ticker, which holds the file open until it is closed
+     */
+    public class Writer implements Closeable {
+
+        private String ticker;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+        private Header header;
+
+        /**
+         * Constructor
+         * @param ticker    the security ticker
+         */
+        private Writer(String ticker) {
+            this.ticker = ticker;
+        }
+
+        /**
+         * Appends bars to the file, replacing any stored bars on or after the first appended date
+         * Bars that end before the last stored bar are merged into the file rather than replacing its tail.
+         * @param bars      the unadjusted bars and split ratios as downloaded, sorted by date
+         * @param start     the start date of range these bars were requested for
+         * @param end       the end date of range these bars were requested for
+         */
+        void append(YahooQuoteBars bars, LocalDate start, LocalDate end) {
+            try {
+                final Header header = open();
+                if (header == null) {
+                    YahooQuoteStore.this.write(ticker, start, end, bars);
+                } else {
+                    final LocalDate newStart = start.isBefore(header.start) ? start : header.start;
+                    final LocalDate newEnd = end.isAfter(header.end) ? end : header.end;
+                    final int first = bars.size() > 0 ? bars.getDate(0) : Integer.MAX_VALUE;
+                    final int last = bars.size() > 0 ? bars.getDate(bars.size() - 1) : Integer.MAX_VALUE;
+                    final int lastStored = header.count > 0 ? buffer.getInt(HEADER_SIZE + (header.count - 1) * 4) : Integer.MIN_VALUE;
+                    final int from = bars.size() > 0 ? ceiling(buffer, header.count, first) : header.count;
+                    if (last < lastStored) {
+                        final YahooQuoteBars stored = readBars(buffer, header.capacity, 0, header.count);
+                        this.close();
+                        YahooQuoteStore.this.write(ticker, newStart, newEnd, stored.merge(bars));
+                    } else if (from + bars.size() > header.capacity) {
+                        final YahooQuoteBars stored = readBars(buffer, header.capacity, 0, from);
+                        this.close();
+                        YahooQuoteStore.this.write(ticker, newStart, newEnd, stored.merge(bars));
+                    } else {
+                        buffer.putInt(OFFSET_COUNT, from);
+                        writeBars(buffer, header.capacity, from, bars);
+                        buffer.putLong(OFFSET_START, newStart.toEpochDay());
+                        buffer.putLong(OFFSET_END, newEnd.toEpochDay());
+                        buffer.putInt(OFFSET_COUNT, from + bars.size());
+                        buffer.force();
+                        header.count = from + bars.size();
+                        header.start = newStart;
+                        header.end = newEnd;
+                    }
+                }
+            } catch (IOException ex) {
+                throw new YahooException("Failed to append bars to quote store for " + ticker, ex);
+            }
+        }
+
+        /**
+         * Opens the file for this writer if it exists and is not already open
+         * @return  the file header, null if no file exists
+         * @throws IOException  if the file cannot be opened
+         */
+        private Header open() throws IOException {
+            if (header != null) {
+                return header;
+            } else {
+                final File file = getFile(ticker);
+                if (!file.exists()) {
+                    return null;
+                } else {
+                    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                    this.header = Header.read(buffer);
+                    if (header == null) {
+                        this.close();
+                    }
+                    return header;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException ex) {
+                throw new YahooException("Failed to close quote store file for " + ticker, ex);
+            } finally {
+                this.channel = null;
+                this.buffer = null;
+                this.header = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.frame.DataFrameException;
+import com.zavtech.morpheus.frame.DataFrameSource;
+
+/**
+ * A DataFrameSource that reads daily bars from a local memory mapped YahooQuoteStore rather than from Yahoo Finance.
+ *
+ * This source accepts the same options as the YahooQuoteHistorySource, and produces identically structured frames, so
+ * the two can be used interchangeably once a store has been populated via the download() method, which downloads bars
+ * from Yahoo Finance with the history source that this source holds.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooQuoteStoreSource extends DataFrameSource<LocalDate,YahooField,YahooQuoteHistorySource.Options> {
+
+    private YahooQuoteStore store;
+    private YahooQuoteHistorySource history;
+
+
+    /**
+     * Constructor
+     * @param directory the directory of the quote store
+     */
+    public YahooQuoteStoreSource(File directory) {
+        this(new YahooQuoteStore(directory));
+    }
+
+    /**
+     * Constructor
+     * @param store the quote store to read from
+     */
+    public YahooQuoteStoreSource(YahooQuoteStore store) {
+        this(store, new YahooQuoteHistorySource(Duration.ofMillis(5000), Duration.ofMillis(15000), null));
+    }
+
+    /**
+     * Constructor
+     * @param store     the quote store to read from
+     * @param history   the history source used to download bars into the store
+     */
+    public YahooQuoteStoreSource(YahooQuoteStore store, YahooQuoteHistorySource history) {
+        this.store = store;
+        this.history = history;
+    }
+
+
+    /**
+     * Returns the store for this source
+     * @return  the quote store
+     */
+    public YahooQuoteStore getStore() {
+        return store;
+    }
+
+
+    /**
+     * Downloads unadjusted daily bars for the date range from Yahoo Finance and appends them to the store
+     * @param ticker    the security ticker
+     * @param start     the start date for range
+     * @param end       the end date for range
+     * @throws YahooException   if the download or the write to the store fails
+     */
+    public void download(String ticker, LocalDate start, LocalDate end) {
+        this.history.download(store, ticker, start, end);
+    }
+
+
+    @Override
+    public DataFrame<LocalDate,YahooField> read(Consumer<YahooQuoteHistorySource.Options> configurator) throws DataFrameException {
+        final YahooQuoteHistorySource.Options options = initOptions(history.new Options(), configurator);
+        try {
+            final String ticker = options.getTicker();
+            final YahooQuoteBars bars = store.read(ticker, options.getStartDate(), options.getEndDate());
+            if (bars == null) {
+                throw new YahooException("No bars in quote store for " + ticker + " at " + store.getDirectory());
+            } else {
+                return YahooQuoteHistorySource.createFrame(options, bars);
+            }
+        } catch (Exception ex) {
+            throw new DataFrameException("Quote store query failed for asset " + options.getTicker(), ex);
+        }
+    }
+
+
+    public static void main(String[] args) {
+        final File directory = new File(System.getProperty("java.io.tmpdir"), "morpheus-yahoo");
+        final YahooQuoteStoreSource source = new YahooQuoteStoreSource(directory);
+        source.download("AAPL", LocalDate.of(2010, 1, 1), LocalDate.of(2015, 1, 1));
+        source.read(options -> {
+            options.withTicker("AAPL");
+            options.withStartDate(LocalDate.of(2012, 1, 1));
+            options.withEndDate(LocalDate.of(2013, 1, 1));
+            options.withDividendAdjusted(true);
+        }).out().print();
+    }
+
+}
@@ -0,0 +1,401 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive kernels that compute asset returns from a column of prices.
+ *
+ * Each kernel is a straight counted loop over double arrays with no calls or branches in the loop body, which allows
+ * the JIT to unroll and vectorize it. Kernels write into an output array supplied by the caller, so that the output can
+ * be wrapped directly as a DataFrame column without copying.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+final class YahooReturnKernels {
+
+    /**
+     * Private constructor for static utility class
+     */
+    private YahooReturnKernels() {
+        super();
+    }
+
+
+    /**
+     * Computes simple 1-period returns, with a zero return for the first price
+     * @param prices    the prices in date order
+     * @param from      the index of the first price to compute a return for
+     * @param to        the index after the last price to compute a return for
+     * @param result    the array to write returns into, starting at index zero
+     */
+    static void simple(double[] prices, int from, int to, double[] result) {
+        if (to > from) {
+            result[0] = 0d;
+            for (int i=from+1; i<to; ++i) {
+                result[i-from] = prices[i] / prices[i-1] - 1d;
+            }
+        }
+    }
+
+
+    /**
+     * Computes log 1-period returns, with a zero return for the first price
+     * @param prices    the prices in date order
+     * @param from      the index of the first price to compute a return for
+     * @param to        the index after the last price to compute a return for
+     * @param result    the array to write returns into, starting at index zero
+     */
+    static void log(double[] prices, int from, int to, double[] result) {
+        if (to > from) {
+            result[0] = 0d;
+            for (int i=from+1; i<to; ++i) {
+                result[i-from] = Math.log(prices[i] / prices[i-1]);
+            }
+        }
+    }
+
+
+    /**
+     * Computes cumulative returns relative to the first price
+     * @param prices    the prices in date order
+     * @param from      the index of the first price, which is the base for all returns
+     * @param to        the index after the last price to compute a return for
+     * @param result    the array to write returns into, starting at index zero
+     */
+    static void cumulative(double[] prices, int from, int to, double[] result) {
+        if (to > from) {
+            final double base = prices[from];
+            for (int i=from; i<to; ++i) {
+                result[i-from] = prices[i] / base - 1d;
+            }
+        }
+    }
+
+
+    /**
+     * Computes N-period returns, with a zero return for the first price and NaN where there are fewer than N prior prices
+     * @param prices    the prices in date order
+     * @param periods   the number of periods for each return
+     * @param from      the index of the first price to compute a return for
+     * @param to        the index after the last price to compute a return for
+     * @param result    the array to write returns into, starting at index zero
+     */
+    static void period(double[] prices, int periods, int from, int to, double[] result) {
+        if (to > from) {
+            result[0] = 0d;
+            final int start = Math.min(to, Math.max(from + 1, periods));
+            for (int i=from+1; i<start; ++i) {
+                result[i-from] = Double.NaN;
+            }
+            for (int i=start; i<to; ++i) {
+                result[i-from] = prices[i] / prices[i-periods] - 1d;
+            }
+        }
+    }
+
+
+    /**
+     * Computes returns between consecutive period ends, with NaN for the first period end which has no prior period
+     * @param prices    the prices in date order
+     * @param ends      the ordinals of the period end prices, in ascending order
+     * @param count     the number of period ends
+     * @param result    the array to write returns into, starting at index zero
+     */
+    static void resampled(double[] prices, int[] ends, int count, double[] result) {
+        if (count > 0) {
+            result[0] = Double.NaN;
+            for (int k=1; k<count; ++k) {
+                result[k] = prices[ends[k]] / prices[ends[k-1]] - 1d;
+            }
+        }
+    }
+
+
+    /**
+     * Collects the ordinals of the last entry of each run of equal period keys in a single pass
+     * @param keys      the period key for each date in date order, for example the year-month of each date
+     * @param ends      the array to write period end ordinals into, which must be at least as long as keys
+     * @return          the number of period ends written
+     */
+    static int periodEnds(long[] keys, int[] ends) {
+        int count = 0;
+        final int last = keys.length - 1;
+        for (int i=0; i<last; ++i) {
+            if (keys[i] != keys[i+1]) {
+                ends[count++] = i;
+            }
+        }
+        if (last >= 0) {
+            ends[count++] = last;
+        }
+        return count;
+    }
+
+
+    /**
+     * Converts simple returns to log returns in place
+     * @param returns   the simple returns
+     * @param count     the number of returns to convert
+     */
+    static void log1p(double[] returns, int count) {
+        for (int i=0; i<count; ++i) {
+            returns[i] = Math.log1p(returns[i]);
+        }
+    }
+
+
+    /**
+     * Subtracts a second series from the values in place, aligning both series by key with a two-pointer merge
+     * Where the other series has no value for a key, the value becomes NaN, unless asOf is true in which case the
+     * latest other value with a lower key is used, and NaN only if there is none.
+     * @param keys          the keys for values in ascending order, such as epoch days
+     * @param values        the values to subtract from
+     * @param otherKeys     the keys for the other values in ascending order
+     * @param other         the other values to subtract
+     * @param asOf          true to use the latest other value at or before each key
+     */
+    static void subtract(long[] keys, double[] values, long[] otherKeys, double[] other, boolean asOf) {
+        int j = 0;
+        final int otherLength = otherKeys.length;
+        for (int i=0; i<keys.length; ++i) {
+            final long key = keys[i];
+            while (j < otherLength && otherKeys[j] < key) {
+                ++j;
+            }
+            if (j < otherLength && otherKeys[j] == key) {
+                values[i] -= other[j];
+            } else if (asOf && j > 0) {
+                values[i] -= other[j-1];
+            } else {
+                values[i] = Double.NaN;
+            }
+        }
+    }
+
+
+    /**
+     * Rebases cumulative returns in place so they continue from a known cumulative level
+     * @param values    the cumulative returns relative to some earlier price
+     * @param from      the index of the first value to rebase
+     * @param to        the index after the last value to rebase
+     * @param origin    the cumulative return in values at the point where the known level applies
+     * @param level     the known cumulative return at that point
+     * @param log       true if the values are cumulative log returns
+     */
+    static void rebase(double[] values, int from, int to, double origin, double level, boolean log) {
+        if (log) {
+            final double shift = level - origin;
+            for (int i=from; i<to; ++i) {
+                values[i] = values[i] + shift;
+            }
+        } else {
+            final double factor = (1d + level) / (1d + origin);
+            for (int i=from; i<to; ++i) {
+                values[i] = (1d + values[i]) * factor - 1d;
+            }
+        }
+    }
+
+
+    /**
+     * Returns the EMA smoothing factor for the half life specified
+     * @param halfLife  the half life in periods
+     * @return          the smoothing factor, alpha
+     */
+    static double emaAlpha(double halfLife) {
+        return 1d - Math.exp(Math.log(0.5d) / halfLife);
+    }
+
+
+    /**
+     * Applies exponential smoothing in place, continuing from the state given
+     * NaN values are left as NaN and do not change the state, and a NaN state is initialized by the first value.
+     * @param values    the values to smooth
+     * @param count     the number of values to smooth
+     * @param alpha     the smoothing factor
+     * @param state     the last smoothed value to continue from, NaN to start from the first value
+     * @return          the last smoothed value, which can be used to continue smoothing later
+     */
+    static double ema(double[] values, int count, double alpha, double state) {
+        return smooth(values, count, alpha, state, new int[0], new double[0][], new double[0][], new double[0][]);
+    }
+
+
+    /**
+     * Computes rolling sums, means and standard deviations over several windows, and applies exponential smoothing
+     * in place, all in a single pass with constant work per row and window
+     * Each rolling statistic is computed from the unsmoothed values, and is NaN until its window is full or while its
+     * window contains a NaN value. The running sums are maintained incrementally, with the values leaving each window
+     * read from a ring buffer sized to the largest window, since the input array is overwritten by the EMA.
+     * @param values    the values to smooth, which are replaced by their EMA if alpha is not NaN
+     * @param count     the number of values
+     * @param alpha     the EMA smoothing factor, NaN to leave the values unchanged
+     * @param state     the last smoothed value to continue from, NaN to start from the first value
+     * @param windows   the rolling window lengths
+     * @param sum       the arrays to write rolling sums into for each window, with null entries for windows not required
+     * @param mean      the arrays to write rolling means into for each window, with null entries for windows not required
+     * @param std       the arrays to write rolling sample standard deviations into, with null entries for windows not required
+     * @return          the last smoothed value, which can be used to continue smoothing later
+     */
+    static double smooth(double[] values, int count, double alpha, double state, int[] windows, double[][] sum, double[][] mean, double[][] std) {
+        final int n = windows.length;
+        final double[] sums = new double[n];
+        final double[] squares = new double[n];
+        final int[] nanCounts = new int[n];
+        int size = 1;
+        for (int window : windows) {
+            size = Math.max(size, window);
+        }
+        final double[] ring = new double[size];
+        final boolean smooth = !Double.isNaN(alpha);
+        double ema = state;
+        for (int i=0; i<count; ++i) {
+            final double value = values[i];
+            final boolean nan = Double.isNaN(value);
+            for (int k=0; k<n; ++k) {
+                final int window = windows[k];
+                if (nan) {
+                    nanCounts[k]++;
+                } else {
+                    sums[k] += value;
+                    squares[k] += value * value;
+                }
+                if (i >= window) {
+                    final double old = ring[(i - window) % size];
+                    if (Double.isNaN(old)) {
+                        nanCounts[k]--;
+                    } else {
+                        sums[k] -= old;
+                        squares[k] -= old * old;
+                    }
+                }
+                final boolean full = i >= window - 1 && nanCounts[k] == 0;
+                if (sum[k] != null) {
+                    sum[k][i] = full ? sums[k] : Double.NaN;
+                }
+                if (mean[k] != null) {
+                    mean[k][i] = full ? sums[k] / window : Double.NaN;
+                }
+                if (std[k] != null) {
+                    final double variance = (squares[k] - sums[k] * sums[k] / window) / (window - 1);
+                    std[k][i] = full && window > 1 ? Math.sqrt(Math.max(0d, variance)) : Double.NaN;
+                }
+            }
+            ring[i % size] = value;
+            if (smooth && !nan) {
+                ema = Double.isNaN(ema) ? value : alpha * value + (1d - alpha) * ema;
+                values[i] = ema;
+            }
+        }
+        return ema;
+    }
+
+
+    /**
+     * Returns the sorted union of several sorted key arrays, computed with a k-way merge over a binary heap of cursors
+     * @param keys  the key arrays, each sorted in ascending order with no duplicates
+     * @return      the sorted union of all keys, with no duplicates
+     */
+    static long[] union(long[][] keys) {
+        final int k = keys.length;
+        final int[] cursors = new int[k];
+        final int[] heap = new int[k];
+        int size = 0;
+        int capacity = 16;
+        for (int j=0; j<k; ++j) {
+            if (keys[j].length > 0) {
+                heap[size++] = j;
+                capacity = Math.max(capacity, keys[j].length);
+            }
+        }
+        for (int i=size/2-1; i>=0; --i) {
+            siftDown(heap, size, i, keys, cursors);
+        }
+        int count = 0;
+        long[] result = new long[capacity];
+        while (size > 0) {
+            final int j = heap[0];
+            final long key = keys[j][cursors[j]++];
+            if (count == 0 || result[count-1] != key) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, result.length * 2);
+                }
+                result[count++] = key;
+            }
+            if (cursors[j] == keys[j].length) {
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, size, 0, keys, cursors);
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+
+    /**
+     * Restores the heap property below the position given, where each heap entry refers to the current key of an array
+     * @param heap      the heap of array indexes
+     * @param size      the number of entries in the heap
+     * @param index     the position to sift down from
+     * @param keys      the key arrays
+     * @param cursors   the current position in each key array
+     */
+    private static void siftDown(int[] heap, int size, int index, long[][] keys, int[] cursors) {
+        final int entry = heap[index];
+        final long key = size > 0 ? keys[entry][cursors[entry]] : 0L;
+        int i = index;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            final int right = child + 1;
+            if (right < size && keys[heap[right]][cursors[heap[right]]] < keys[heap[child]][cursors[heap[child]]]) {
+                child = right;
+            }
+            if (keys[heap[child]][cursors[heap[child]]] >= key) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = entry;
+    }
+
+
+    /**
+     * Writes values into a column aligned to a union of keys, with NaN where the values have no entry for a key
+     * @param union     the sorted union of keys
+     * @param keys      the sorted keys for the values, which must be a subset of the union
+     * @param values    the values for each key
+     * @param column    the column to write into, with the same length as the union
+     */
+    static void align(long[] union, long[] keys, double[] values, double[] column) {
+        int j = 0;
+        final int length = keys.length;
+        for (int i=0; i<union.length; ++i) {
+            if (j < length && keys[j] == union[i]) {
+                column[i] = values[j++];
+            } else {
+                column[i] = Double.NaN;
+            }
+        }
+    }
+
+}
@@ -16,20 +16,29 @@
 package com.zavtech.morpheus.yahoo;
 
 import java.io.File;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import com.zavtech.morpheus.array.Array;
 import com.zavtech.morpheus.frame.DataFrame;
@@ -37,7 +46,6 @@ import com.zavtech.morpheus.frame.DataFrameException;
 import com.zavtech.morpheus.frame.DataFrameSource;
 import com.zavtech.morpheus.util.Asserts;
 import com.zavtech.morpheus.util.Collect;
-import com.zavtech.morpheus.util.Try;
 
 /**
  * A DataFrameSource that generates asset returns calculated from close prices downloaded from Yahoo Finance.
@@ -46,9 +54,12 @@ import com.zavtech.morpheus.util.Try;
  *
  * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
  */
-public class YahooReturnSource extends DataFrameSource<LocalDate,String,YahooReturnSource.Options> {
+public class YahooReturnSource extends DataFrameSource<LocalDate,String,YahooReturnSource.Options> implements AutoCloseable {
 
-    private ExecutorService executor;
+    private static final int UPDATE_SEED_DAYS = 10;
+
+    private YahooFetchPipeline pipeline;
+    private ConcurrentHashMap<QuoteKey,SharedLoad> inFlight = new ConcurrentHashMap<>();
 
     /**
      * Constructor
@@ -59,14 +70,18 @@ public class YahooReturnSource extends DataFrameSource<LocalDate,String,YahooRet
 
     /**
      * Constructor
-     * @param threadCount   the thread count for this source
+     * @param maxInFlight   the max number of tickers to download concurrently
      */
-    public YahooReturnSource(int threadCount) {
-        this.executor = Executors.newFixedThreadPool(threadCount, runnable -> {
-            final Thread thread = new Thread(runnable, "YahooReturnSourceThread");
-            thread.setDaemon(true);
-            return thread;
-        });
+    public YahooReturnSource(int maxInFlight) {
+        this(new YahooFetchPipeline("YahooReturnSource", maxInFlight));
+    }
+
+    /**
+     * Constructor
+     * @param pipeline  the pipeline to run downloads on, which is closed when this source is closed
+     */
+    public YahooReturnSource(YahooFetchPipeline pipeline) {
+        this.pipeline = pipeline;
     }
 
 
@@ -74,16 +89,18 @@ public class YahooReturnSource extends DataFrameSource<LocalDate,String,YahooRet
     public DataFrame<LocalDate,String> read(Consumer<Options> configurator) throws DataFrameException {
         try {
             final Options options = initOptions(new Options(), configurator);
-            final List<Callable<DataFrame<LocalDate,String>>> tasks = createTasks(options);
-            final List<Future<DataFrame<LocalDate,String>>> futures = executor.invokeAll(tasks);
-            final List<DataFrame<LocalDate,String>> frames = futures.stream().map(Try::get).collect(Collectors.toList());
-            final DataFrame<LocalDate,String> result = DataFrame.combineFirst(frames);
-            final DataFrame<LocalDate,String> returns = result.cols().select(options.tickers).rows().sort(true).copy();
-            if (options.emaHalfLife == null) {
-                return returns;
-            } else {
-                return returns.smooth(true).ema(options.emaHalfLife);
-            }
+            final CompletableFuture<Series> benchmark = createBenchmark(options);
+            final List<String> tickers = new ArrayList<>(options.tickers);
+            final List<Future<Series>> futures = new ArrayList<>(tickers.size());
+            tickers.forEach(ticker -> futures.add(submit(options, ticker)));
+            final Map<String,Series> results = getResults(options, tickers, futures, benchmark);
+            final Series base = benchmark.getNow(null);
+            final Map<String,Series> columns = new LinkedHashMap<>();
+            results.forEach((ticker, series) -> {
+                applyBenchmark(options, series, base);
+                columns.putAll(applySmoothing(options, ticker, series));
+            });
+            return createFrame(columns);
         } catch (YahooException ex) {
             throw ex;
         } catch (Exception ex) {
@@ -93,58 +110,409 @@ public class YahooReturnSource extends DataFrameSource<LocalDate,String,YahooRet
 
 
     /**
-     * Returns the list of tasks for the request specified
+     * Returns a copy of a previously computed returns frame with rows appended for trading days after its last row
+     * Only bars from shortly before the last row onwards are downloaded, where the last bar on or before the last row
+     * is the seed for the first new return. Cumulative returns are rebased onto the last cumulative value of each
+     * ticker, and EMA smoothing continues from the last smoothed value, so the result matches a full read over the
+     * extended range. The options must describe the same return type, log mode, benchmark and half life as the read
+     * that produced the previous frame, and the tickers default to the columns of that frame. Cumulative returns cannot
+     * be updated if they were smoothed or measured relative to a benchmark, since the raw cumulative level of each
+     * ticker cannot be recovered from such a frame.
+     * @param previous      the previously computed returns frame
+     * @param endDate       the new end date
+     * @param configurator  the options configurator, which need not set the start or end date
+     * @return              the returns frame extended to the new end date
+     * @throws YahooException   if the update fails
+     */
+    public DataFrame<LocalDate,String> update(DataFrame<LocalDate,String> previous, LocalDate endDate, Consumer<Options> configurator) {
+        try {
+            final LocalDate lastDate = previous.rows().lastKey().orElseThrow(() -> new YahooException("The previous returns frame is empty"));
+            if (!endDate.isAfter(lastDate)) {
+                return previous.copy();
+            }
+            final Options options = initOptions(new Options(), request -> {
+                request.withStartDate(lastDate.minusDays(UPDATE_SEED_DAYS));
+                request.withEndDate(endDate);
+                configurator.accept(request);
+                if (request.tickers.isEmpty()) {
+                    request.withTickers(previous.cols().keyArray());
+                }
+            });
+            Asserts.assertTrue(options.type.equals("daily") || options.type.equals("cumulative"), "Only daily and cumulative returns can be updated");
+            Asserts.assertTrue(options.getWindows().length == 0, "Returns with rolling statistics cannot be updated");
+            if (options.type.equals("cumulative")) {
+                Asserts.assertTrue(options.emaHalfLife == null, "Smoothed cumulative returns cannot be updated");
+                Asserts.assertTrue(options.benchmark == null && options.riskFree == null, "Relative cumulative returns cannot be updated");
+            }
+            options.tickers.forEach(ticker -> {
+                Asserts.assertTrue(previous.cols().contains(ticker), "The previous returns frame has no column for " + ticker);
+            });
+            final CompletableFuture<Series> benchmark = createBenchmark(options);
+            final List<String> tickers = new ArrayList<>(options.tickers);
+            final List<Future<Series>> futures = new ArrayList<>(tickers.size());
+            tickers.forEach(ticker -> futures.add(submit(options, ticker)));
+            final Map<String,Series> results = getResults(options, tickers, futures, benchmark);
+            final Series base = benchmark.getNow(null);
+            final Map<String,Series> tails = new LinkedHashMap<>();
+            results.forEach((ticker, series) -> {
+                tails.put(ticker, createUpdateSeries(options, ticker, series, base, previous, lastDate));
+            });
+            final Array<LocalDate> previousDates = previous.rows().keyArray();
+            final Map<String,Series> merged = new LinkedHashMap<>();
+            previous.cols().keyArray().forEach(ticker -> {
+                final Series head = new Series(previousDates, previous.col(ticker).toDoubleStream().toArray());
+                final Series tail = tails.get(ticker);
+                merged.put(ticker, tail != null ? head.append(tail) : head);
+            });
+            return createFrame(merged);
+        } catch (YahooException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new YahooException("Failed to update returns from Yahoo Finance", ex);
+        }
+    }
+
+
+    /**
+     * Submits the task to compute returns for a ticker to the fetch pipeline, subject to the per-ticker deadline if any
+     * @param options   the request options
+     * @param ticker    the security ticker
+     * @return          the future returns for ticker
+     */
+    private CompletableFuture<Series> submit(Options options, String ticker) {
+        return pipeline.submit(ticker, options.deadline, createTask(options, ticker));
+    }
+
+
+    /**
+     * Waits for the benchmark and the returns of each ticker, reports the status of each, and returns the tickers that completed
+     * The benchmark, if any, is reported once as the first entry under its own ticker. Unless partial results were
+     * requested, the first ticker that failed or timed out fails the whole request once all tickers have finished,
+     * so that the status report is always complete. A failed benchmark always fails the request, since no returns
+     * can be measured relative to it.
+     * @param options   the request options
+     * @param tickers   the tickers in column order
+     * @param futures   the future returns for each ticker, in the same order
+     * @param benchmark the future benchmark or risk free returns
+     * @return          the returns for each ticker that completed, in column order
+     * @throws YahooException   if the benchmark failed, or any ticker failed and partial results were not requested
+     */
+    private Map<String,Series> getResults(Options options, List<String> tickers, List<Future<Series>> futures, Future<Series> benchmark) {
+        final Map<String,Series> results = new LinkedHashMap<>();
+        final List<TickerStatus> report = new ArrayList<>(tickers.size() + 1);
+        final TickerStatus benchmarkStatus = options.benchmark != null ? getStatus(options.benchmark, benchmark, null) : null;
+        if (benchmarkStatus != null) {
+            report.add(benchmarkStatus);
+        }
+        for (int i=0; i<tickers.size(); ++i) {
+            report.add(getStatus(tickers.get(i), futures.get(i), results));
+        }
+        if (options.statusHandler != null) {
+            options.statusHandler.accept(report);
+        }
+        if (benchmarkStatus != null && benchmarkStatus.getStatus() != Status.OK) {
+            final String reason = benchmarkStatus.getReason();
+            throw new YahooException("Failed to load benchmark returns for " + options.benchmark + ", " + reason, benchmarkStatus.getError());
+        } else if (!options.partialResults) {
+            report.stream().filter(status -> status.getStatus() != Status.OK).findFirst().ifPresent(status -> {
+                throw new YahooException("Failed to load returns for " + status.getTicker() + ", " + status.getReason(), status.getError());
+            });
+        }
+        return results;
+    }
+
+
+    /**
+     * Waits for the returns of a ticker and returns its status, adding the returns to the results if it completed
+     * @param ticker    the security ticker
+     * @param future    the future returns for the ticker
+     * @param results   the results to add completed returns to, null to discard them
+     * @return          the status for the ticker
+     */
+    private TickerStatus getStatus(String ticker, Future<Series> future, Map<String,Series> results) {
+        try {
+            final Series series = future.get();
+            if (results != null) {
+                results.put(ticker, series);
+            }
+            return new TickerStatus(ticker, Status.OK, null);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            final Status status = cause instanceof TimeoutException ? Status.TIMED_OUT : Status.FAILED;
+            return new TickerStatus(ticker, status, cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new YahooException("Interrupted while waiting for returns from Yahoo Finance", ex);
+        }
+    }
+
+
+    /**
+     * Closes the fetch pipeline for this source, after which no further reads can be made
+     */
+    @Override
+    public void close() {
+        this.pipeline.close();
+    }
+
+
+    /**
+     * Returns a future for the series that returns are measured relative to, which completes with null if there is none
+     * @param options   the request options
+     * @return          the future benchmark or risk free series
+     */
+    private CompletableFuture<Series> createBenchmark(Options options) {
+        if (options.benchmark != null) {
+            return pipeline.submit(options.benchmark, options.deadline, createTask(options, options.benchmark));
+        } else if (options.riskFree != null) {
+            final Array<LocalDate> dates = options.riskFree.rows().keyArray();
+            final double[] values = options.riskFree.colAt(0).toDoubleStream().toArray();
+            return CompletableFuture.completedFuture(new Series(dates, values));
+        } else {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+
+    /**
+     * Subtracts the benchmark or risk free returns in place on the primitive return array, if either was specified
+     * @param options   the request options
+     * @param series    the returns for the ticker
+     * @param benchmark the benchmark or risk free returns to subtract, null for none
+     */
+    private void applyBenchmark(Options options, Series series, Series benchmark) {
+        if (benchmark != null) {
+            final long[] keys = getEpochDays(series.dates);
+            final long[] benchmarkKeys = getEpochDays(benchmark.dates);
+            final boolean asOf = options.riskFree != null;
+            YahooReturnKernels.subtract(keys, series.values, benchmarkKeys, benchmark.values, asOf);
+        }
+    }
+
+
+    /**
+     * Applies EMA smoothing in place if a half life was specified, continuing from the state given
+     * @param options   the request options
+     * @param values    the values to smooth
+     * @param state     the last smoothed value to continue from, NaN to start from the first value
+     */
+    private void applyEma(Options options, double[] values, double state) {
+        if (options.emaHalfLife != null) {
+            final double alpha = YahooReturnKernels.emaAlpha(options.emaHalfLife);
+            YahooReturnKernels.ema(values, values.length, alpha, state);
+        }
+    }
+
+
+    /**
+     * Applies EMA smoothing to the returns, and computes any rolling statistics requested, in a single pass
+     * Rolling statistics are computed from the unsmoothed returns and are added as extra columns named after the
+     * ticker, statistic and window, for example AAPL.std20, following the returns column for the ticker.
+     * @param options   the request options
+     * @param ticker    the security ticker
+     * @param series    the returns for the ticker, which are smoothed in place
+     * @return          the columns for the ticker, starting with the returns
+     */
+    private Map<String,Series> applySmoothing(Options options, String ticker, Series series) {
+        final Map<String,Series> columns = new LinkedHashMap<>();
+        columns.put(ticker, series);
+        final int count = series.values.length;
+        final int[] windows = options.getWindows();
+        final double[][] sum = new double[windows.length][];
+        final double[][] mean = new double[windows.length][];
+        final double[][] std = new double[windows.length][];
+        for (int k=0; k<windows.length; ++k) {
+            sum[k] = options.rollingSum.contains(windows[k]) ? new double[count] : null;
+            mean[k] = options.rollingMean.contains(windows[k]) ? new double[count] : null;
+            std[k] = options.rollingStd.contains(windows[k]) ? new double[count] : null;
+        }
+        final double alpha = options.emaHalfLife != null ? YahooReturnKernels.emaAlpha(options.emaHalfLife) : Double.NaN;
+        YahooReturnKernels.smooth(series.values, count, alpha, Double.NaN, windows, sum, mean, std);
+        for (int k=0; k<windows.length; ++k) {
+            addColumn(columns, ticker + ".sum" + windows[k], series.dates, sum[k]);
+            addColumn(columns, ticker + ".mean" + windows[k], series.dates, mean[k]);
+            addColumn(columns, ticker + ".std" + windows[k], series.dates, std[k]);
+        }
+        return columns;
+    }
+
+
+    /**
+     * Adds a column to the map if its values were computed
+     * @param columns   the map of columns
+     * @param name      the column name
+     * @param dates     the dates for the column
+     * @param values    the values for the column, null if not computed
+     */
+    private static void addColumn(Map<String,Series> columns, String name, Array<LocalDate> dates, double[] values) {
+        if (values != null) {
+            columns.put(name, new Series(dates, values));
+        }
+    }
+
+
+    /**
+     * Returns a DataFrame of returns aligned on the union of the dates across all series
+     * The union of dates is built with a k-way merge of the sorted dates of each series, and each series is then
+     * written into its own pre-sized column with NaN for missing dates, so the result is materialized exactly once
+     * with no intermediate frames and no sort.
+     * @param seriesMap the return series for each ticker, in column order
+     * @return          the DataFrame of returns
+     */
+    private DataFrame<LocalDate,String> createFrame(Map<String,Series> seriesMap) {
+        final List<String> tickers = new ArrayList<>(seriesMap.keySet());
+        final List<Series> series = new ArrayList<>(seriesMap.values());
+        final int colCount = series.size();
+        final long[][] keys = new long[colCount][];
+        for (int j=0; j<colCount; ++j) {
+            keys[j] = getEpochDays(series.get(j).dates);
+        }
+        final long[] union = YahooReturnKernels.union(keys);
+        final Array<LocalDate> dates = Array.of(LocalDate.class, union.length);
+        for (int i=0; i<union.length; ++i) {
+            dates.setValue(i, LocalDate.ofEpochDay(union[i]));
+        }
+        final double[][] data = new double[colCount][union.length];
+        for (int j=0; j<colCount; ++j) {
+            YahooReturnKernels.align(union, keys[j], series.get(j).values, data[j]);
+            keys[j] = null;
+        }
+        return DataFrame.of(dates, String.class, columns -> {
+            for (int j=0; j<colCount; ++j) {
+                columns.add(tickers.get(j), Array.of(data[j]));
+            }
+        });
+    }
+
+
+    /**
+     * Returns the series of returns for a ticker on dates after the last date of a previous frame
+     * @param options   the request options
+     * @param ticker    the security ticker
+     * @param series    the returns for the ticker computed from the seed bar onwards
+     * @param benchmark the benchmark or risk free returns to subtract, null for none
+     * @param previous  the previously computed returns frame
+     * @param lastDate  the last date in the previous frame
+     * @return          the series of new returns
+     */
+    private Series createUpdateSeries(
+        Options options,
+        String ticker,
+        Series series,
+        Series benchmark,
+        DataFrame<LocalDate,String> previous,
+        LocalDate lastDate) {
+        final int length = series.dates.length();
+        int first = 0;
+        while (first < length && !series.dates.getValue(first).isAfter(lastDate)) {
+            ++first;
+        }
+        if (first == 0 && length > 0) {
+            series.values[0] = Double.NaN;
+        } else if (first > 0 && options.type.equals("cumulative")) {
+            final int seed = first - 1;
+            final int seedOrdinal = previous.rows().ordinalOf(series.dates.getValue(seed), false);
+            final double level = seedOrdinal < 0 ? Double.NaN : previous.data().getDouble(seedOrdinal, ticker);
+            YahooReturnKernels.rebase(series.values, first, length, series.values[seed], level, options.logReturns);
+        }
+        applyBenchmark(options, series, benchmark);
+        final Array<LocalDate> dates = Array.of(LocalDate.class, length - first);
+        for (int i=first; i<length; ++i) {
+            dates.setValue(i - first, series.dates.getValue(i));
+        }
+        final double[] values = Arrays.copyOfRange(series.values, first, length);
+        applyEma(options, values, getLastValue(previous, ticker));
+        return new Series(dates, values);
+    }
+
+
+    /**
+     * Returns the last non NaN value in the column for the ticker specified
+     * @param frame     the returns frame
+     * @param ticker    the ticker column
+     * @return          the last non NaN value, NaN if none
+     */
+    private static double getLastValue(DataFrame<LocalDate,String> frame, String ticker) {
+        final int colOrdinal = frame.cols().ordinalOf(ticker);
+        for (int i=frame.rowCount()-1; i>=0; --i) {
+            final double value = frame.data().getDouble(i, colOrdinal);
+            if (!Double.isNaN(value)) {
+                return value;
+            }
+        }
+        return Double.NaN;
+    }
+
+
+    /**
+     * Returns the epoch day for each of the dates specified
+     * @param dates the dates to convert
+     * @return      the epoch days
+     */
+    private static long[] getEpochDays(Array<LocalDate> dates) {
+        final long[] epochDays = new long[dates.length()];
+        for (int i=0; i<epochDays.length; ++i) {
+            epochDays[i] = dates.getValue(i).toEpochDay();
+        }
+        return epochDays;
+    }
+
+
+    /**
+     * Returns the task to compute returns for the ticker specified
      * @param options   the request options
-     * @return          the list of tasks
+     * @param ticker    the security ticker
+     * @return          the task for ticker
      */
-    private List<Callable<DataFrame<LocalDate,String>>> createTasks(Options options) {
+    private Callable<Series> createTask(Options options, String ticker) {
         switch (options.type) {
-            case "daily":       return createDailyReturnTasks(options).collect(Collectors.toList());
-            case "weekly":      return createPeriodReturnTasks(options, 5).collect(Collectors.toList());
-            case "monthly":     return createPeriodReturnTasks(options, 20).collect(Collectors.toList());
-            case "cumulative":  return createCumReturnTasks(options).collect(Collectors.toList());
+            case "daily":       return createDailyReturnTask(options, ticker);
+            case "weekly":      return createPeriodReturnTask(options, ticker, 5);
+            case "monthly":     return createPeriodReturnTask(options, ticker, 20);
+            case "cumulative":  return createCumReturnTask(options, ticker);
+            case "week-end":    return createResampledReturnTask(options, ticker, 14);
+            case "month-end":   return createResampledReturnTask(options, ticker, 45);
+            case "business":    return createResampledReturnTask(options, ticker, options.businessDays * 2 + 10);
             default:    throw new IllegalArgumentException("Unsupported return type: " + options.type);
         }
     }
 
 
     /**
-     * Returns a stream of callables that compute 1-day returns
+     * Returns a callable that computes 1-day returns
      * @param request   the request options
-     * @return          the stream of callables for 1-day returns
+     * @param ticker    the security ticker
+     * @return          the callable for 1-day returns
      */
-    private Stream<Callable<DataFrame<LocalDate,String>>> createDailyReturnTasks(Options request) {
-        return request.tickers.stream().map(ticker -> () -> {
+    private Callable<Series> createDailyReturnTask(Options request, String ticker) {
+        return () -> {
             try {
                 final DataFrame<LocalDate,YahooField> quotes =  loadQuotes(request, ticker, 0);
                 final Array<LocalDate> rowKeys = quotes.rows().keyArray();
-                return DataFrame.of(rowKeys, String.class, columns -> {
-                    columns.add(ticker, Double.class).applyDoubles(v -> {
-                        final int rowOrdinal = v.rowOrdinal();
-                        if (rowOrdinal == 0) {
-                            return 0d;
-                        } else {
-                            final double p0 = quotes.data().getDouble(rowOrdinal-1, YahooField.PX_CLOSE);
-                            final double p1 = quotes.data().getDouble(rowOrdinal, YahooField.PX_CLOSE);
-                            return p1 / p0 - 1d;
-                        }
-                    });
-                });
+                final double[] prices = getClosePrices(quotes);
+                final double[] returns = new double[prices.length];
+                if (request.logReturns) {
+                    YahooReturnKernels.log(prices, 0, prices.length, returns);
+                } else {
+                    YahooReturnKernels.simple(prices, 0, prices.length, returns);
+                }
+                return new Series(rowKeys, returns);
             } catch (Exception ex) {
                 throw new YahooException("Failed to load quote data from Yahoo Finance for " + ticker, ex);
             }
-        });
+        };
     }
 
 
     /**
-     * Returns a stream of callables that compute N-day returns
+     * Returns a callable that computes N-day returns
      * @param request   the request options
+     * @param ticker    the security ticker
      * @param days      the number od business days for period
-     * @return          the stream of callables for N-day returns
+     * @return          the callable for N-day returns
      */
-    private Stream<Callable<DataFrame<LocalDate,String>>> createPeriodReturnTasks(Options request, int days) {
-        return request.tickers.stream().map(ticker -> () -> {
+    private Callable<Series> createPeriodReturnTask(Options request, String ticker, int days) {
+        return () -> {
             try {
                 final LocalDate start = request.startDate;
                 final LocalDate end = request.endDate;
@@ -152,70 +520,366 @@ public class YahooReturnSource extends DataFrameSource<LocalDate,String,YahooRet
                 final Array<LocalDate> dates = quotes.rows().keyArray().filter(v -> {
                     return start.compareTo(v.getValue()) <= 0 && end.compareTo(v.getValue()) >= 0;
                 });
-                return DataFrame.of(dates, String.class, columns -> {
-                    columns.add(ticker, Double.class).applyDoubles(v -> {
-                        if (v.rowOrdinal() == 0) {
-                            return 0d;
-                        } else {
-                            final LocalDate date = v.rowKey();
-                            final int rowOrdinal = quotes.rows().ordinalOf(date, true);
-                            final double p0 = quotes.data().getDouble(rowOrdinal-days, YahooField.PX_CLOSE);
-                            final double p1 = quotes.data().getDouble(rowOrdinal, YahooField.PX_CLOSE);
-                            return p1 / p0 - 1d;
-                        }
-                    });
-                });
+                final double[] prices = getClosePrices(quotes);
+                final double[] returns = new double[dates.length()];
+                final int from = dates.length() > 0 ? quotes.rows().ordinalOf(dates.getValue(0), true) : 0;
+                YahooReturnKernels.period(prices, days, from, from + dates.length(), returns);
+                return new Series(dates, toLogReturns(request, returns));
             } catch (Exception ex) {
                 throw new YahooException("Failed to load quote data from Yahoo Finance for " + ticker, ex);
             }
-        });
+        };
+    }
+
+
+    /**
+     * Returns a callable that computes returns between period end dates, sampled in a single pass over the sorted dates
+     * @param request   the request options
+     * @param ticker    the security ticker
+     * @param seedDays  the number of calendar days before the start date to load so the first period has a base price
+     * @return          the callable for period end returns
+     */
+    private Callable<Series> createResampledReturnTask(Options request, String ticker, int seedDays) {
+        return () -> {
+            try {
+                final DataFrame<LocalDate,YahooField> quotes =  loadQuotes(request, ticker, seedDays);
+                final Array<LocalDate> rowKeys = quotes.rows().keyArray();
+                final double[] prices = getClosePrices(quotes);
+                final long[] keys = getPeriodKeys(rowKeys, request.type, request.businessDays);
+                final int[] ends = new int[keys.length];
+                final int count = YahooReturnKernels.periodEnds(keys, ends);
+                final double[] resampled = new double[count];
+                YahooReturnKernels.resampled(prices, ends, count, resampled);
+                int first = 0;
+                while (first < count && rowKeys.getValue(ends[first]).isBefore(request.startDate)) {
+                    ++first;
+                }
+                final Array<LocalDate> dates = Array.of(LocalDate.class, count - first);
+                for (int k=first; k<count; ++k) {
+                    dates.setValue(k - first, rowKeys.getValue(ends[k]));
+                }
+                final double[] returns = Arrays.copyOfRange(resampled, first, count);
+                return new Series(dates, toLogReturns(request, returns));
+            } catch (Exception ex) {
+                throw new YahooException("Failed to load quote data from Yahoo Finance for " + ticker, ex);
+            }
+        };
     }
 
 
     /**
-     * Returns a stream of callables that compute cumulative returns
+     * Returns a period key for each date, where the last date in each run of equal keys is a period end
+     * Week keys count Monday based weeks since the epoch, month keys are year * 12 + month, and business day keys
+     * count steps back from the last date, so that the most recent date is always a period end.
+     * @param dates         the dates in ascending order
+     * @param type          the return type, which is one of week-end, month-end or business
+     * @param businessDays  the number of business days per period for the business type
+     * @return              the period key for each date
+     */
+    static long[] getPeriodKeys(Array<LocalDate> dates, String type, int businessDays) {
+        final int length = dates.length();
+        final long[] keys = new long[length];
+        for (int i=0; i<length; ++i) {
+            final LocalDate date = dates.getValue(i);
+            switch (type) {
+                case "week-end":    keys[i] = Math.floorDiv(date.toEpochDay() + 3L, 7L);    break;
+                case "month-end":   keys[i] = date.getYear() * 12L + date.getMonthValue();  break;
+                case "business":    keys[i] = (length - 1 - i) / businessDays;              break;
+                default:    throw new IllegalArgumentException("Unsupported period type: " + type);
+            }
+        }
+        return keys;
+    }
+
+
+    /**
+     * Returns a callable that computes cumulative returns
      * @param request   the return request
-     * @return          the stream of callables for cumulative returns
+     * @param ticker    the security ticker
+     * @return          the callable for cumulative returns
      */
-    private Stream<Callable<DataFrame<LocalDate,String>>> createCumReturnTasks(Options request) {
-        return request.tickers.stream().map(ticker -> () -> {
+    private Callable<Series> createCumReturnTask(Options request, String ticker) {
+        return () -> {
             try {
                 final DataFrame<LocalDate,YahooField> quotes =  loadQuotes(request, ticker, 0);
                 final Array<LocalDate> rowKeys = quotes.rows().keyArray();
-                return DataFrame.of(rowKeys, String.class, columns -> {
-                    columns.add(ticker, Double.class).applyDoubles(v -> {
-                        final int rowOrdinal = v.rowOrdinal();
-                        final double p0 = quotes.data().getDouble(0, YahooField.PX_CLOSE);
-                        final double p1 = quotes.data().getDouble(rowOrdinal, YahooField.PX_CLOSE);
-                        return p1 / p0 - 1d;
-                    });
-                });
+                final double[] prices = getClosePrices(quotes);
+                final double[] returns = new double[prices.length];
+                YahooReturnKernels.cumulative(prices, 0, prices.length, returns);
+                return new Series(rowKeys, toLogReturns(request, returns));
             } catch (Exception ex) {
                 throw new YahooException("Failed to load quote data from Yahoo Finance for " + ticker, ex);
             }
-        });
+        };
+    }
+
+
+    /**
+     * Converts simple returns to log returns in place if log returns were requested
+     * @param request   the request options
+     * @param returns   the simple returns
+     * @return          the returns, converted to log returns if requested
+     */
+    private static double[] toLogReturns(Options request, double[] returns) {
+        if (request.logReturns) {
+            YahooReturnKernels.log1p(returns, returns.length);
+        }
+        return returns;
+    }
+
+
+    /**
+     * Returns the close prices from the quote frame as a primitive array
+     * @param quotes    the quote frame
+     * @return          the close prices in date order
+     */
+    static double[] getClosePrices(DataFrame<LocalDate,YahooField> quotes) {
+        return quotes.col(YahooField.PX_CLOSE).toDoubleStream().toArray();
     }
 
 
     /**
      * Loads split and dividend adjusted daily bars from Yahoo Finance
+     * Concurrent loads of the same ticker and date range, whether from the same read or overlapping reads on this
+     * source, share a single download and the resulting frame, which callers must treat as read only. The caller that
+     * starts the download is not interrupted by its deadline while others are waiting on it, and each waiter times out
+     * on its own wait, so one caller's deadline never fails another caller's request. If the leader is interrupted
+     * while nobody is waiting, any caller that joins afterwards starts a new download rather than sharing the failure.
      * @param request   the request options
      * @param ticker    the ticker to load quotes for
      * @param seedDays  the number of extra leading days to include at start
      * @return          the DataFrame of open, high, low, close, volume quotes
      */
     private DataFrame<LocalDate,YahooField> loadQuotes(Options request, String ticker, int seedDays) {
-        final YahooQuoteHistorySource source = DataFrameSource.lookup(YahooQuoteHistorySource.class);
-        return source.read(options -> {
-            options.withTicker(ticker);
-            options.withStartDate(request.startDate.minusDays(seedDays));
-            options.withEndDate(request.endDate);
-            options.withPaddedHolidays(false);
-            options.withDividendAdjusted(true);
-        });
+        final QuoteKey key = new QuoteKey(ticker, request.startDate.minusDays(seedDays), request.endDate, true);
+        final SharedLoad load = new SharedLoad();
+        final SharedLoad existing = inFlight.putIfAbsent(key, load);
+        if (existing != null) {
+            existing.waiters.incrementAndGet();
+            try {
+                if (request.deadline == null) {
+                    return existing.get();
+                } else {
+                    return existing.get(request.deadline.toMillis(), TimeUnit.MILLISECONDS);
+                }
+            } catch (CancellationException ex) {
+                return loadQuotes(request, ticker, seedDays);
+            } catch (ExecutionException ex) {
+                throw new YahooException("Shared quote download failed for " + ticker, ex.getCause());
+            } catch (TimeoutException ex) {
+                throw new YahooException("Timed out waiting for shared quote download for " + ticker, ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new YahooException("Interrupted waiting for shared quote download for " + ticker, ex);
+            } finally {
+                existing.waiters.decrementAndGet();
+            }
+        } else {
+            try {
+                final DataFrame<LocalDate,YahooField> quotes = YahooFetchPipeline.interruptibleIf(() -> load.waiters.get() == 0, () -> {
+                    final YahooQuoteHistorySource source = DataFrameSource.lookup(YahooQuoteHistorySource.class);
+                    return source.read(options -> {
+                        options.withTicker(ticker);
+                        options.withStartDate(key.startDate);
+                        options.withEndDate(key.endDate);
+                        options.withPaddedHolidays(false);
+                        options.withDividendAdjusted(key.adjusted);
+                        options.withFields(YahooField.PX_CLOSE);
+                    });
+                });
+                load.complete(quotes);
+                inFlight.remove(key, load);
+                return quotes;
+            } catch (Throwable t) {
+                inFlight.remove(key, load);
+                if (Thread.currentThread().isInterrupted() || t instanceof InterruptedException) {
+                    load.cancel(false);
+                } else {
+                    load.completeExceptionally(t);
+                }
+                if (t instanceof Error) {
+                    throw (Error)t;
+                } else if (t instanceof RuntimeException) {
+                    throw (RuntimeException)t;
+                } else {
+                    throw new YahooException("Failed to load quotes for " + ticker, t);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A quote download shared by concurrent callers, which counts the callers waiting on it besides the one running it
+     */
+    private static class SharedLoad extends CompletableFuture<DataFrame<LocalDate,YahooField>> {
+
+        private AtomicInteger waiters = new AtomicInteger();
+    }
+
+
+
+    /**
+     * The key that identifies an in-flight quote download, which includes the seed days via the start date
+     */
+    private static class QuoteKey {
+
+        private String ticker;
+        private LocalDate startDate;
+        private LocalDate endDate;
+        private boolean adjusted;
+
+        /**
+         * Constructor
+         * @param ticker    the ticker
+         * @param startDate the start date including any seed days
+         * @param endDate   the end date
+         * @param adjusted  true for dividend adjusted quotes
+         */
+        QuoteKey(String ticker, LocalDate startDate, LocalDate endDate, boolean adjusted) {
+            this.ticker = ticker.toUpperCase();
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.adjusted = adjusted;
+        }
+
+        @Override()
+        public int hashCode() {
+            return Objects.hash(ticker, startDate, endDate, adjusted);
+        }
+
+        @Override()
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            } else if (!(other instanceof QuoteKey)) {
+                return false;
+            } else {
+                final QuoteKey that = (QuoteKey)other;
+                return ticker.equals(that.ticker) && startDate.equals(that.startDate) && endDate.equals(that.endDate) && adjusted == that.adjusted;
+            }
+        }
+    }
+
+
+    /**
+     * The outcome of loading returns for a single ticker
+     */
+    public enum Status {
+
+        OK,
+        TIMED_OUT,
+        FAILED
     }
 
 
+    /**
+     * The status of a single ticker in a returns request, which includes the error if it did not complete
+     */
+    public static class TickerStatus {
+
+        private String ticker;
+        private Status status;
+        private Throwable error;
+
+        /**
+         * Constructor
+         * @param ticker    the security ticker
+         * @param status    the status for ticker
+         * @param error     the error if the ticker did not complete, otherwise null
+         */
+        TickerStatus(String ticker, Status status, Throwable error) {
+            this.ticker = ticker;
+            this.status = status;
+            this.error = error;
+        }
+
+        /**
+         * Returns the ticker for this status
+         * @return  the security ticker
+         */
+        public String getTicker() {
+            return ticker;
+        }
+
+        /**
+         * Returns the outcome for the ticker
+         * @return  the outcome for ticker
+         */
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the error if the ticker did not complete
+         * @return  the error, null if the ticker completed
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * Returns a description of why the ticker did not complete
+         * @return  the reason, null if the ticker completed
+         */
+        public String getReason() {
+            if (error == null) {
+                return null;
+            } else {
+                Throwable cause = error;
+                while (cause.getCause() != null && cause.getCause() != cause) {
+                    cause = cause.getCause();
+                }
+                final String message = cause.getMessage();
+                return message != null ? message : cause.getClass().getSimpleName();
+            }
+        }
+
+        @Override()
+        public String toString() {
+            return error == null ? ticker + ": " + status : ticker + ": " + status + " (" + getReason() + ")";
+        }
+    }
+
+
+    /**
+     * A series of returns for a single ticker held as a primitive array
+     */
+    private static class Series {
+
+        private Array<LocalDate> dates;
+        private double[] values;
+
+        /**
+         * Constructor
+         * @param dates     the dates in ascending order
+         * @param values    the return for each date
+         */
+        Series(Array<LocalDate> dates, double[] values) {
+            this.dates = dates;
+            this.values = values;
+        }
+
+        /**
+         * Returns a new series with the dates and values of this series followed by those of the other
+         * @param other the series to append, whose dates must all be after the dates in this series
+         * @return      the combined series
+         */
+        Series append(Series other) {
+            final int length = dates.length();
+            final Array<LocalDate> allDates = Array.of(LocalDate.class, length + other.dates.length());
+            final double[] allValues = Arrays.copyOf(values, length + other.values.length);
+            for (int i=0; i<length; ++i) {
+                allDates.setValue(i, dates.getValue(i));
+            }
+            for (int i=0; i<other.dates.length(); ++i) {
+                allDates.setValue(length + i, other.dates.getValue(i));
+            }
+            System.arraycopy(other.values, 0, allValues, length, other.values.length);
+            return new Series(allDates, allValues);
+        }
+    }
+
 
     /**
      * The options for this source
@@ -223,7 +887,17 @@ public class YahooReturnSource extends DataFrameSource<LocalDate,String,YahooRet
     public class Options implements DataFrameSource.Options<LocalDate,String> {
 
         private String type = "daily";
+        private int businessDays = 1;
+        private boolean logReturns;
+        private String benchmark;
+        private DataFrame<LocalDate,?> riskFree;
+        private Duration deadline;
+        private boolean partialResults;
+        private Consumer<List<TickerStatus>> statusHandler;
         private Integer emaHalfLife;
+        private Set<Integer> rollingSum = new TreeSet<>();
+        private Set<Integer> rollingMean = new TreeSet<>();
+        private Set<Integer> rollingStd = new TreeSet<>();
         private LocalDate startDate;
         private LocalDate endDate = LocalDate.now();
         private Set<String> tickers = new LinkedHashSet<>();
@@ -234,9 +908,18 @@ public class YahooReturnSource extends DataFrameSource<LocalDate,String,YahooRet
             Asserts.notNull(endDate != null, "A end date is required");
             Asserts.assertTrue(endDate.isAfter(startDate), "The start date must be < end date");
             Asserts.check(tickers.size() > 0, "At least one ticker must be specified");
+            Asserts.assertTrue(businessDays > 0, "The number of business days per period must be > 0");
+            Asserts.assertTrue(benchmark == null || riskFree == null, "Specify either a benchmark or a risk free series, not both");
+            Asserts.assertTrue(deadline == null || !deadline.isNegative(), "The deadline cannot be negative");
+            if (riskFree != null) {
+                Asserts.assertTrue(riskFree.colCount() > 0, "The risk free series must have at least one column");
+            }
             if (emaHalfLife != null) {
                 Asserts.assertTrue(emaHalfLife >= 0, "The EWMA half life must be > 0");
             }
+            rollingSum.forEach(window -> Asserts.assertTrue(window > 0, "The rolling sum window must be > 0"));
+            rollingMean.forEach(window -> Asserts.assertTrue(window > 0, "The rolling mean window must be > 0"));
+            rollingStd.forEach(window -> Asserts.assertTrue(window > 1, "The rolling std window must be > 1"));
         }
 
         /**
@@ -266,6 +949,39 @@ public class YahooReturnSource extends DataFrameSource<LocalDate,String,YahooRet
             return this;
         }
 
+        /**
+         * Signals a request for returns between calendar week ends, sampled on the last trading day of each week
+         * Unlike weekly(), which looks back a fixed 5 rows, each return spans exactly one Monday to Sunday week.
+         * The most recent week may be partial if the end date falls mid-week.
+         * @return  these options
+         */
+        public Options weekEnd() {
+            this.type = "week-end";
+            return this;
+        }
+
+        /**
+         * Signals a request for returns between calendar month ends, sampled on the last trading day of each month
+         * Unlike monthly(), which looks back a fixed 20 rows, each return spans exactly one calendar month.
+         * The most recent month may be partial if the end date falls mid-month.
+         * @return  these options
+         */
+        public Options monthEnd() {
+            this.type = "month-end";
+            return this;
+        }
+
+        /**
+         * Signals a request for non-overlapping returns over every N trading days, counting back from the last date
+         * @param businessDays  the number of trading days per period
+         * @return              these options
+         */
+        public Options businessDays(int businessDays) {
+            this.type = "business";
+            this.businessDays = businessDays;
+            return this;
+        }
+
         /**
          * Signals a request for cumulative daily returns
          * @return  these options
@@ -275,6 +991,40 @@ public class YahooReturnSource extends DataFrameSource<LocalDate,String,YahooRet
             return this;
         }
 
+        /**
+         * Sets whether to compute log returns rather than simple returns
+         * @param logReturns    true for log returns
+         * @return              these options
+         */
+        public Options withLogReturns(boolean logReturns) {
+            this.logReturns = logReturns;
+            return this;
+        }
+
+        /**
+         * Sets a benchmark ticker whose returns are subtracted from each ticker on the same date
+         * The benchmark returns are computed with the same return type as the tickers, and dates on which the
+         * benchmark has no return yield NaN.
+         * @param benchmark the benchmark ticker, null for none
+         * @return          these options
+         */
+        public Options withBenchmark(String benchmark) {
+            this.benchmark = benchmark;
+            return this;
+        }
+
+        /**
+         * Sets a risk free series whose first column is subtracted from each ticker to yield excess returns
+         * The risk free values must be expressed per return period, and for each date the latest value on or before
+         * that date is used, so the series need not share the same holiday calendar as the tickers.
+         * @param riskFree  the risk free series keyed by date, null for none
+         * @return          these options
+         */
+        public Options withRiskFree(DataFrame<LocalDate,?> riskFree) {
+            this.riskFree = riskFree;
+            return this;
+        }
+
         /**
          * Sets the start date for these options
          * @param start the start date
@@ -335,6 +1085,80 @@ public class YahooReturnSource extends DataFrameSource<LocalDate,String,YahooRet
             return this;
         }
 
+        /**
+         * Sets the max time that loading the returns for any one ticker may take, after which it is timed out
+         * The deadline starts when the ticker starts loading, so time spent queued behind other tickers does not count.
+         * The deadline also applies to the benchmark, so a stalled benchmark download cannot hold up every ticker.
+         * @param deadline  the per-ticker deadline, null for none
+         * @return          these options
+         */
+        public Options withDeadline(Duration deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        /**
+         * Sets whether to return the tickers that completed when others fail or time out, rather than failing the request
+         * @param partialResults    true to return partial results
+         * @return                  these options
+         */
+        public Options withPartialResults(boolean partialResults) {
+            this.partialResults = partialResults;
+            return this;
+        }
+
+        /**
+         * Sets a handler that receives the status of every ticker, in ticker order, once all tickers have finished
+         * If a benchmark was specified, its status is reported once as the first entry, ahead of the tickers.
+         * @param statusHandler the handler for the status report, null for none
+         * @return              these options
+         */
+        public Options withStatusHandler(Consumer<List<TickerStatus>> statusHandler) {
+            this.statusHandler = statusHandler;
+            return this;
+        }
+
+        /**
+         * Returns the distinct rolling windows across all rolling statistics, in ascending order
+         * @return  the rolling windows
+         */
+        int[] getWindows() {
+            final Set<Integer> windows = new TreeSet<>(rollingSum);
+            windows.addAll(rollingMean);
+            windows.addAll(rollingStd);
+            return windows.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * Adds rolling sums of returns over the windows specified, as extra columns named like AAPL.sum20
+         * @param windows   the window lengths in periods
+         * @return          these options
+         */
+        public Options withRollingSum(int... windows) {
+            Arrays.stream(windows).forEach(rollingSum::add);
+            return this;
+        }
+
+        /**
+         * Adds rolling means of returns over the windows specified, as extra columns named like AAPL.mean20
+         * @param windows   the window lengths in periods
+         * @return          these options
+         */
+        public Options withRollingMean(int... windows) {
+            Arrays.stream(windows).forEach(rollingMean::add);
+            return this;
+        }
+
+        /**
+         * Adds rolling sample standard deviations of returns over the windows specified, as extra columns named like AAPL.std20
+         * @param windows   the window lengths in periods
+         * @return          these options
+         */
+        public Options withRollingStd(int... windows) {
+            Arrays.stream(windows).forEach(rollingStd::add);
+            return this;
+        }
+
         /**
          * Sets the optional half life to apply exponential smoothing
          * @param emaHalfLife   the optional EWMA half life, can be null for no smoothing
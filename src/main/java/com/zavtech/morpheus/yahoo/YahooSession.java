@@ -0,0 +1,400 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.zavtech.morpheus.util.IO;
+import com.zavtech.morpheus.util.http.HttpClient;
+import com.zavtech.morpheus.util.http.HttpException;
+import com.zavtech.morpheus.util.http.HttpHeader;
+
+/**
+ * A session that holds the cookies and crumb required to make historical quote requests to Yahoo Finance.
+ *
+ * The current credentials are held in an immutable object published through an atomic reference, so reading them never
+ * blocks. When Yahoo Finance rejects the credentials, the first thread to notice performs the two request handshake while
+ * any other threads that observed the same stale credentials wait for, and then share, the result. Requests made via the
+ * execute() method are retried once with the new credentials.
+ *
+ * Sessions can optionally be persisted to a file so that a restarted JVM can skip the handshake, and the default session
+ * shared by all YahooQuoteHistorySource instances is persisted to the file named by the morpheus.yahoo.session property.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooSession {
+
+    private static final String CRUMB_URL = "https://query1.finance.yahoo.com/v1/test/getcrumb";
+    private static final String COOKIE_URL = "https://finance.yahoo.com/quote/SPY?p=SPY";
+    private static final String SESSION_FILE_PROPERTY = "morpheus.yahoo.session";
+
+    private static final YahooSession defaultSession = createDefault();
+
+    private File file;
+    private Duration connectTimeout;
+    private Duration readTimeout;
+    private Supplier<Credentials> handshake;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private final AtomicReference<Credentials> credentials = new AtomicReference<>();
+
+
+    /**
+     * Constructor
+     */
+    public YahooSession() {
+        this(null);
+    }
+
+    /**
+     * Constructor
+     * @param file  the optional file to persist the session to, null for an in-memory session only
+     */
+    public YahooSession(File file) {
+        this(file, Duration.ofMillis(5000), Duration.ofMillis(15000));
+    }
+
+    /**
+     * Constructor
+     * @param file              the optional file to persist the session to, null for an in-memory session only
+     * @param connectTimeout    the http connect timeout for the handshake
+     * @param readTimeout       the http read timeout for the handshake
+     */
+    public YahooSession(File file, Duration connectTimeout, Duration readTimeout) {
+        this(file, connectTimeout, readTimeout, null);
+    }
+
+    /**
+     * Constructor
+     * @param file              the optional file to persist the session to, null for an in-memory session only
+     * @param connectTimeout    the http connect timeout for the handshake
+     * @param readTimeout       the http read timeout for the handshake
+     * @param handshake         the function to obtain new credentials, null for the Yahoo Finance handshake
+     */
+    YahooSession(File file, Duration connectTimeout, Duration readTimeout, Supplier<Credentials> handshake) {
+        this.file = file;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.handshake = handshake != null ? handshake : this::handshake;
+        this.credentials.set(load());
+    }
+
+
+    /**
+     * Returns the default session shared by all history sources
+     * @return  the default session
+     */
+    public static YahooSession getDefault() {
+        return defaultSession;
+    }
+
+
+    /**
+     * Returns the default session, persisted to the file named by the morpheus.yahoo.session property if set
+     * @return  the newly created default session
+     */
+    private static YahooSession createDefault() {
+        final String path = System.getProperty(SESSION_FILE_PROPERTY);
+        if (path == null || path.trim().length() == 0) {
+            return new YahooSession();
+        } else {
+            return new YahooSession(new File(path.trim()));
+        }
+    }
+
+
+    /**
+     * Returns the current credentials for this session, performing the handshake if there are none yet
+     * @return  the current credentials
+     */
+    public Credentials getCredentials() {
+        final Credentials current = credentials.get();
+        return current != null ? current : refresh(null);
+    }
+
+
+    /**
+     * Discards the current credentials so the next request performs the handshake
+     */
+    public void invalidate() {
+        this.credentials.set(null);
+        if (file != null && file.exists() && !file.delete()) {
+            IO.println("Failed to delete Yahoo Finance session file at " + file.getAbsolutePath());
+        }
+    }
+
+
+    /**
+     * Executes a request with the current credentials, refreshing them and retrying once if they are rejected
+     * @param request   the function to execute the request given the credentials
+     * @param <T>       the result type
+     * @return          the result of the request
+     */
+    public <T> T execute(Function<Credentials,T> request) {
+        final Credentials current = getCredentials();
+        try {
+            return request.apply(current);
+        } catch (RuntimeException ex) {
+            if (!isExpired(ex)) {
+                throw ex;
+            } else {
+                IO.println("Yahoo Finance rejected session credentials, refreshing session");
+                return request.apply(refresh(current));
+            }
+        }
+    }
+
+
+    /**
+     * Replaces the stale credentials with new credentials, unless another thread has already done so
+     * @param stale     the stale credentials observed by the caller, null if there were none
+     * @return          the new credentials
+     */
+    private Credentials refresh(Credentials stale) {
+        refreshLock.lock();
+        try {
+            final Credentials current = credentials.get();
+            if (current != null && current != stale) {
+                return current;
+            } else {
+                final Credentials result = handshake.get();
+                this.credentials.set(result);
+                this.save(result);
+                return result;
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+
+    /**
+     * Returns true if the exception or any of its causes indicates Yahoo Finance rejected the credentials
+     * @param ex    the exception to check
+     * @return      true if the session has expired
+     */
+    private static boolean isExpired(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ExpiredException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Returns true if the http status code indicates the session credentials were rejected
+     * @param code  the http status code
+     * @return      true for 401 or 403 status codes
+     */
+    static boolean isExpired(int code) {
+        return code == 401 || code == 403;
+    }
+
+
+    /**
+     * Performs the two request handshake with Yahoo Finance to obtain new credentials
+     * @return      the new credentials
+     */
+    private Credentials handshake() {
+        final Map<String,String> cookies = requestCookies();
+        final String crumb = requestCrumb(cookies);
+        return new Credentials(cookies, crumb);
+    }
+
+
+    /**
+     * Requests the cookies that must accompany each historical quote request
+     * @return      the cookies to send with requests
+     */
+    private Map<String,String> requestCookies() {
+        return HttpClient.getDefault().<Map<String,String>>doGet(httpRequest -> {
+            httpRequest.setUrl(COOKIE_URL);
+            httpRequest.setReadTimeout((int)readTimeout.getSeconds() * 1000);
+            httpRequest.setConnectTimeout((int)connectTimeout.getSeconds() * 1000);
+            httpRequest.getHeaders().putAll(YahooFinance.getRequestHeaders());
+            httpRequest.setResponseHandler(response -> {
+                final List<HttpHeader> headers = response.getHeaders();
+                final Map<String,String> cookies = new HashMap<>();
+                final Matcher matcher = Pattern.compile("(B)=(.+)").matcher("");
+                headers.forEach(header -> {
+                    if (header.getKey().equalsIgnoreCase("Set-Cookie")) {
+                        final String cookieValue = header.getValue();
+                        final String[] tokens = cookieValue.split(";");
+                        for (String token : tokens) {
+                            if (matcher.reset(token.trim()).matches()) {
+                                final String key = matcher.group(1);
+                                final String value = matcher.group(2);
+                                cookies.put(key, value);
+                            }
+                        }
+                    }
+                });
+                return Optional.of(cookies);
+            });
+        }).orElseThrow(() -> new YahooException("Failed to capture cookies for historical quote request"));
+    }
+
+
+    /**
+     * Requests the crumb token that must accompany each historical quote request
+     * @param cookies   the cookies for the session
+     * @return          the crumb token
+     */
+    private String requestCrumb(Map<String,String> cookies) {
+        return HttpClient.getDefault().<String>doGet(httpRequest -> {
+            httpRequest.setUrl(CRUMB_URL);
+            httpRequest.setReadTimeout((int)readTimeout.getSeconds() * 1000);
+            httpRequest.setConnectTimeout((int)connectTimeout.getSeconds() * 1000);
+            httpRequest.getCookies().putAll(cookies);
+            httpRequest.setResponseHandler(response -> {
+                try {
+                    final String crumb = IO.readText(response.getStream());
+                    return Optional.of(crumb.trim());
+                } catch (IOException ex) {
+                    throw new HttpException(httpRequest, "Failed to load data from url", ex);
+                }
+            });
+        }).orElseThrow(() -> new YahooException("Failed to initialize crumb token for historical quote request"));
+    }
+
+
+    /**
+     * Loads persisted credentials from the session file if configured
+     * @return  the persisted credentials, null if none
+     */
+    private Credentials load() {
+        if (file == null || !file.exists()) {
+            return null;
+        } else {
+            try (InputStream is = new FileInputStream(file)) {
+                final Properties properties = new Properties();
+                properties.load(is);
+                final String crumb = properties.getProperty("crumb");
+                final Map<String,String> cookies = new HashMap<>();
+                properties.stringPropertyNames().forEach(key -> {
+                    if (key.startsWith("cookie.")) {
+                        cookies.put(key.substring(7), properties.getProperty(key));
+                    }
+                });
+                return crumb != null && !cookies.isEmpty() ? new Credentials(cookies, crumb) : null;
+            } catch (Exception ex) {
+                IO.println("Failed to load Yahoo Finance session from " + file.getAbsolutePath() + ": " + ex.getMessage());
+                return null;
+            }
+        }
+    }
+
+
+    /**
+     * Persists the credentials to the session file if configured
+     * @param credentials   the credentials to persist
+     */
+    private void save(Credentials credentials) {
+        if (file != null) {
+            try {
+                final File dir = file.getAbsoluteFile().getParentFile();
+                if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("Unable to create directory " + dir.getAbsolutePath());
+                }
+                final Properties properties = new Properties();
+                properties.setProperty("crumb", credentials.getCrumb());
+                credentials.getCookies().forEach((key, value) -> properties.setProperty("cookie." + key, value));
+                final File temp = new File(dir, file.getName() + ".tmp");
+                try (OutputStream os = new FileOutputStream(temp)) {
+                    properties.store(os, "Yahoo Finance session");
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (Exception ex) {
+                IO.println("Failed to save Yahoo Finance session to " + file.getAbsolutePath() + ": " + ex.getMessage());
+            }
+        }
+    }
+
+
+    /**
+     * An immutable snapshot of the cookies and crumb for a session
+     */
+    public static class Credentials {
+
+        private String crumb;
+        private Map<String,String> cookies;
+
+        /**
+         * Constructor
+         * @param cookies   the session cookies
+         * @param crumb     the crumb token
+         */
+        Credentials(Map<String,String> cookies, String crumb) {
+            this.crumb = crumb;
+            this.cookies = Collections.unmodifiableMap(new HashMap<>(cookies));
+        }
+
+        /**
+         * Returns the crumb token for these credentials
+         * @return  the crumb token
+         */
+        public String getCrumb() {
+            return crumb;
+        }
+
+        /**
+         * Returns the cookies for these credentials
+         * @return  the unmodifiable cookie map
+         */
+        public Map<String,String> getCookies() {
+            return cookies;
+        }
+    }
+
+
+    /**
+     * An exception raised when Yahoo Finance rejects the session credentials
+     */
+    static class ExpiredException extends YahooException {
+
+        /**
+         * Constructor
+         * @param message   the exception message
+         */
+        ExpiredException(String message) {
+            super(message);
+        }
+    }
+
+}
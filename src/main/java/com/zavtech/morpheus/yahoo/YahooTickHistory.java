@@ -0,0 +1,357 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.zavtech.morpheus.array.Array;
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.index.Index;
+import com.zavtech.morpheus.util.Asserts;
+import com.zavtech.morpheus.util.Collect;
+import com.zavtech.morpheus.util.IO;
+
+/**
+ * A bounded intraday history of live quotes, which holds a fixed capacity ring buffer of primitive values per ticker.
+ *
+ * Each ticker is allocated one long array of epoch millisecond timestamps and one double array per field, all sized to
+ * the capacity on the first tick for that ticker, after which the oldest ticks are overwritten. Memory therefore stays
+ * fixed at roughly capacity * (8 + 8 * fields) bytes per ticker however long a session runs. Queries copy only the
+ * ticks they select into exactly sized arrays, and return a DataFrame keyed by epoch millis like YahooIntradaySource.
+ * Timestamps must be strictly increasing per ticker, and ticks that are not newer than the last tick are ignored.
+ *
+ * Any use of the extracted data from this software should adhere to Yahoo Finance Terms and Conditions.
+ *
+ * @author  Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooTickHistory {
+
+    private int capacity;
+    private Array<YahooField> fields;
+    private ConcurrentHashMap<String,Buffer> bufferMap = new ConcurrentHashMap<>();
+
+
+    /**
+     * Constructor
+     * @param capacity  the max number of ticks held per ticker
+     */
+    public YahooTickHistory(int capacity) {
+        this(capacity, Arrays.asList(YahooField.PX_LAST, YahooField.PX_BID, YahooField.PX_ASK, YahooField.PX_VOLUME));
+    }
+
+    /**
+     * Constructor
+     * @param capacity  the max number of ticks held per ticker
+     * @param fields    the double valued fields to hold for each ticker
+     */
+    public YahooTickHistory(int capacity, Iterable<YahooField> fields) {
+        Asserts.assertTrue(capacity > 0, "The tick history capacity must be > 0");
+        this.capacity = capacity;
+        final List<YahooField> fieldList = Collect.asList(fields);
+        Asserts.assertTrue(fieldList.size() > 0, "At least one field must be specified");
+        fieldList.forEach(field -> {
+            if (field.getDataType() != Double.class) {
+                throw new YahooException("Only double valued fields are supported in tick history: " + field);
+            }
+        });
+        this.fields = Array.of(YahooField.class, fieldList.size());
+        for (int i=0; i<fieldList.size(); ++i) {
+            this.fields.setValue(i, fieldList.get(i));
+        }
+    }
+
+
+    /**
+     * Returns the max number of ticks held per ticker
+     * @return  the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the fields held for each ticker
+     * @return  the fields
+     */
+    public Array<YahooField> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns the tickers for which ticks have been recorded
+     * @return  the set of tickers
+     */
+    public Set<String> getTickers() {
+        return Collections.unmodifiableSet(bufferMap.keySet());
+    }
+
+    /**
+     * Returns the number of ticks currently held for the ticker
+     * @param ticker    the ticker
+     * @return          the number of ticks, zero if none
+     */
+    public int size(String ticker) {
+        final Buffer buffer = bufferMap.get(ticker);
+        return buffer == null ? 0 : buffer.size();
+    }
+
+
+    /**
+     * Appends a live quote snapshot to the history of every ticker in the snapshot
+     * Fields missing from the snapshot are recorded as NaN.
+     * @param timestamp the snapshot time in epoch millis
+     * @param snapshot  the snapshot from YahooQuoteLiveSource
+     */
+    public void append(long timestamp, DataFrame<String,YahooField> snapshot) {
+        final int[] colOrdinals = new int[fields.length()];
+        for (int j=0; j<colOrdinals.length; ++j) {
+            final YahooField field = fields.getValue(j);
+            colOrdinals[j] = snapshot.cols().contains(field) ? snapshot.cols().ordinalOf(field) : -1;
+        }
+        final double[] values = new double[colOrdinals.length];
+        final int rowCount = snapshot.rowCount();
+        for (int i=0; i<rowCount; ++i) {
+            for (int j=0; j<colOrdinals.length; ++j) {
+                values[j] = colOrdinals[j] < 0 ? Double.NaN : snapshot.data().getDouble(i, colOrdinals[j]);
+            }
+            append(snapshot.rows().key(i), timestamp, values);
+        }
+    }
+
+
+    /**
+     * Appends a tick to the history of a ticker, overwriting the oldest tick once the history is full
+     * @param ticker    the ticker
+     * @param timestamp the tick time in epoch millis
+     * @param values    the values for the tick, in the order of the fields for this history
+     * @return          true if appended, false if the tick is not newer than the last tick for the ticker
+     */
+    public boolean append(String ticker, long timestamp, double... values) {
+        Asserts.assertTrue(values.length == fields.length(), "Expected " + fields.length() + " values, found " + values.length);
+        final Buffer buffer = bufferMap.computeIfAbsent(ticker, key -> new Buffer(capacity, fields.length()));
+        return buffer.add(timestamp, values);
+    }
+
+
+    /**
+     * Returns the last count ticks for the ticker, or fewer if fewer are held
+     * @param ticker    the ticker
+     * @param count     the max number of ticks
+     * @return          the DataFrame of ticks keyed by epoch millis
+     */
+    public DataFrame<Long,YahooField> last(String ticker, int count) {
+        Asserts.assertTrue(count >= 0, "The tick count must be >= 0");
+        final Buffer buffer = bufferMap.get(ticker);
+        if (buffer == null) {
+            return createFrame(new long[0], new double[fields.length()][0]);
+        } else {
+            synchronized (buffer) {
+                final int size = Math.min(count, buffer.size);
+                return buffer.select(buffer.size - size, size);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the ticks for the ticker within a time window
+     * @param ticker    the ticker
+     * @param start     the start of the window in epoch millis, inclusive
+     * @param end       the end of the window in epoch millis, exclusive
+     * @return          the DataFrame of ticks keyed by epoch millis
+     */
+    public DataFrame<Long,YahooField> window(String ticker, long start, long end) {
+        final Buffer buffer = bufferMap.get(ticker);
+        if (buffer == null) {
+            return createFrame(new long[0], new double[fields.length()][0]);
+        } else {
+            synchronized (buffer) {
+                final int from = buffer.lowerBound(start);
+                final int to = Math.max(from, buffer.lowerBound(end));
+                return buffer.select(from, to - from);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the ticks for the ticker within a trailing window ending at the last tick
+     * @param ticker    the ticker
+     * @param duration  the length of the trailing window
+     * @return          the DataFrame of ticks keyed by epoch millis
+     */
+    public DataFrame<Long,YahooField> window(String ticker, Duration duration) {
+        final Buffer buffer = bufferMap.get(ticker);
+        if (buffer == null) {
+            return createFrame(new long[0], new double[fields.length()][0]);
+        } else {
+            synchronized (buffer) {
+                final long end = buffer.size > 0 ? buffer.timestamp(buffer.size - 1) : 0L;
+                final int from = buffer.lowerBound(end - duration.toMillis() + 1);
+                return buffer.select(from, buffer.size - from);
+            }
+        }
+    }
+
+
+    /**
+     * Returns a DataFrame of ticks built in a single step from exactly sized primitive columns
+     * @param timestamps    the tick timestamps
+     * @param values        the tick values per field
+     * @return              the DataFrame of ticks keyed by epoch millis
+     */
+    private DataFrame<Long,YahooField> createFrame(long[] timestamps, double[][] values) {
+        return DataFrame.of(Index.of(Array.of(timestamps)), YahooField.class, columns -> {
+            for (int j=0; j<values.length; ++j) {
+                columns.add(fields.getValue(j), Array.of(values[j]));
+            }
+        });
+    }
+
+
+    /**
+     * A fixed capacity ring buffer of ticks for a single ticker, guarded by its own monitor
+     */
+    private class Buffer {
+
+        private int head;
+        private int size;
+        private long[] timestamps;
+        private double[][] values;
+
+        /**
+         * Constructor
+         * @param capacity      the max number of ticks
+         * @param fieldCount    the number of fields
+         */
+        Buffer(int capacity, int fieldCount) {
+            this.timestamps = new long[capacity];
+            this.values = new double[fieldCount][capacity];
+        }
+
+        /**
+         * Returns the number of ticks in this buffer
+         * @return  the number of ticks
+         */
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Adds a tick to this buffer, overwriting the oldest tick if full
+         * @param timestamp the tick time in epoch millis
+         * @param tick      the values for the tick
+         * @return          true if added, false if the tick is not newer than the last tick
+         */
+        synchronized boolean add(long timestamp, double[] tick) {
+            if (size > 0 && timestamp <= timestamp(size - 1)) {
+                return false;
+            } else {
+                this.timestamps[head] = timestamp;
+                for (int j=0; j<tick.length; ++j) {
+                    this.values[j][head] = tick[j];
+                }
+                this.head = head + 1 == timestamps.length ? 0 : head + 1;
+                this.size = Math.min(size + 1, timestamps.length);
+                return true;
+            }
+        }
+
+        /**
+         * Returns the physical index for a logical index, where logical index zero is the oldest tick
+         * @param index the logical index
+         * @return      the physical index
+         */
+        private int physical(int index) {
+            final int physical = head - size + index;
+            return physical < 0 ? physical + timestamps.length : physical;
+        }
+
+        /**
+         * Returns the timestamp at a logical index
+         * @param index the logical index
+         * @return      the timestamp in epoch millis
+         */
+        private long timestamp(int index) {
+            return timestamps[physical(index)];
+        }
+
+        /**
+         * Returns the logical index of the first tick at or after the timestamp, by binary search
+         * @param timestamp the timestamp in epoch millis
+         * @return          the logical index, which is size if all ticks are before the timestamp
+         */
+        private int lowerBound(long timestamp) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (timestamp(mid) < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Returns a DataFrame of a contiguous range of ticks, copied in at most two segments per array
+         * @param from  the logical index of the first tick
+         * @param count the number of ticks
+         * @return      the DataFrame of ticks
+         */
+        private DataFrame<Long,YahooField> select(int from, int count) {
+            final long[] keys = new long[count];
+            final double[][] data = new double[values.length][count];
+            if (count > 0) {
+                final int start = physical(from);
+                final int first = Math.min(count, timestamps.length - start);
+                System.arraycopy(timestamps, start, keys, 0, first);
+                System.arraycopy(timestamps, 0, keys, first, count - first);
+                for (int j=0; j<values.length; ++j) {
+                    System.arraycopy(values[j], start, data[j], 0, first);
+                    System.arraycopy(values[j], 0, data[j], first, count - first);
+                }
+            }
+            return createFrame(keys, data);
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        final YahooQuoteLiveSource source = new YahooQuoteLiveSource();
+        final YahooTickHistory history = new YahooTickHistory(10000);
+        for (int i=0; i<10; ++i) {
+            final DataFrame<String,YahooField> snapshot = source.read(options -> {
+                options.withTickers("AAPL", "MSFT", "GOOGL");
+                options.withFields(YahooField.PX_LAST, YahooField.PX_BID, YahooField.PX_ASK, YahooField.PX_VOLUME);
+            });
+            history.append(System.currentTimeMillis(), snapshot);
+            Thread.sleep(5000);
+        }
+        history.last("AAPL", 5).out().print();
+        history.window("MSFT", Duration.ofSeconds(20)).out().print();
+        IO.println("Tick count for GOOGL: " + history.size("GOOGL"));
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the bounded fetch pipeline
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooFetchPipelineTest {
+
+
+    @Test()
+    public void testMaxInFlight() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        try (YahooFetchPipeline pipeline = new YahooFetchPipeline("Test", 4)) {
+            final List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i=0; i<200; ++i) {
+                final String ticker = "T" + i;
+                futures.add(pipeline.submit(ticker, () -> {
+                    final int count = inFlight.incrementAndGet();
+                    maxInFlight.accumulateAndGet(count, Math::max);
+                    Thread.sleep(1);
+                    inFlight.decrementAndGet();
+                    return Thread.currentThread().getName();
+                }));
+            }
+            for (int i=0; i<futures.size(); ++i) {
+                Assert.assertEquals(futures.get(i).get(), "Test-T" + i, "Thread is named after the task");
+            }
+        }
+        Assert.assertTrue(maxInFlight.get() <= 4, "In flight tasks are bounded, max was " + maxInFlight.get());
+    }
+
+
+    @Test()
+    public void testDeadline() throws Exception {
+        try (YahooFetchPipeline pipeline = new YahooFetchPipeline("Test", 1)) {
+            final CompletableFuture<Boolean> slow = pipeline.submit("SLOW", Duration.ofMillis(100), () -> {
+                Thread.sleep(10000);
+                return true;
+            });
+            final CompletableFuture<Boolean> fast = pipeline.submit("FAST", Duration.ofMillis(5000), () -> {
+                return Thread.currentThread().isInterrupted();
+            });
+            try {
+                slow.get();
+                Assert.fail("The slow task should have timed out");
+            } catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof TimeoutException, "Slow task timed out");
+            }
+            Assert.assertEquals(fast.get(), Boolean.FALSE, "Deadline interrupt does not leak into the next task");
+        }
+    }
+
+
+    @Test()
+    public void testDeferredInterrupt() throws Exception {
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicInteger outcome = new AtomicInteger();
+        try (YahooFetchPipeline pipeline = new YahooFetchPipeline("Test", 1)) {
+            final CompletableFuture<Boolean> shared = pipeline.submit("SHARED", Duration.ofMillis(100), () -> {
+                YahooFetchPipeline.interruptibleIf(() -> false, () -> {
+                    Thread.sleep(500);
+                    return true;
+                });
+                outcome.set(Thread.currentThread().isInterrupted() ? 1 : 2);
+                finished.countDown();
+                return true;
+            });
+            try {
+                shared.get();
+                Assert.fail("The shared task should have timed out");
+            } catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof TimeoutException, "Caller times out on schedule");
+            }
+            Assert.assertTrue(finished.await(5, TimeUnit.SECONDS), "Shared work runs to completion");
+            Assert.assertEquals(outcome.get(), 1, "Interrupt is raised once the shared work returns");
+        }
+    }
+
+
+    @Test()
+    public void testCloseWithQueuedTasks() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final YahooFetchPipeline pipeline = new YahooFetchPipeline("Test", 1);
+        final CompletableFuture<Boolean> running = pipeline.submit("RUNNING", () -> {
+            started.countDown();
+            Thread.sleep(10000);
+            return true;
+        });
+        final List<CompletableFuture<String>> queued = new ArrayList<>();
+        for (int i=0; i<10; ++i) {
+            final String ticker = "T" + i;
+            queued.add(pipeline.submit(ticker, () -> ticker));
+        }
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS), "First task is running");
+        pipeline.close();
+        for (CompletableFuture<String> future : queued) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail("Queued task should fail when the pipeline closes");
+            } catch (ExecutionException ex) {
+                Assert.assertTrue(ex.getCause() instanceof YahooException, "Queued task fails with YahooException");
+            }
+        }
+        try {
+            running.get(5, TimeUnit.SECONDS);
+            Assert.fail("Running task should be interrupted when the pipeline closes");
+        } catch (ExecutionException ex) {
+            Assert.assertTrue(ex.getCause() instanceof YahooException, "Interrupted task fails with YahooException");
+        }
+    }
+
+
+    @Test()
+    public void testCancelQueuedTasks() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger runCount = new AtomicInteger();
+        try (YahooFetchPipeline pipeline = new YahooFetchPipeline("Test", 1)) {
+            final CompletableFuture<Boolean> running = pipeline.submit("RUNNING", () -> {
+                started.countDown();
+                return release.await(5, TimeUnit.SECONDS);
+            });
+            final List<CompletableFuture<Integer>> queued = new ArrayList<>();
+            for (int i=0; i<10; ++i) {
+                queued.add(pipeline.submit("T" + i, runCount::incrementAndGet));
+            }
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS), "First task is running");
+            queued.forEach(future -> future.cancel(true));
+            release.countDown();
+            Assert.assertTrue(running.get(5, TimeUnit.SECONDS), "Running task completes");
+            Assert.assertEquals(pipeline.submit("LAST", runCount::get).get(5, TimeUnit.SECONDS).intValue(), 0, "Cancelled tasks are skipped");
+        }
+    }
+
+
+    @Test(expectedExceptions = { YahooException.class })
+    public void testClosed() throws Exception {
+        final YahooFetchPipeline pipeline = new YahooFetchPipeline("Test", 2);
+        pipeline.close();
+        Assert.assertTrue(pipeline.isClosed());
+        pipeline.submit("AAPL", () -> "AAPL");
+    }
+
+}
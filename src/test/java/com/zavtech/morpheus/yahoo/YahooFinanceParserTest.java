@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Locale;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the Yahoo Finance text parser
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooFinanceParserTest {
+
+
+    @Test()
+    public void testParseDouble() throws Exception {
+        final YahooFinanceParser parser = new YahooFinanceParser();
+        final String[] values = {"170.35", "+1.25", "-0.52", "1,234,567", "2.5K", "1.2M", "-3.4B", "1.1T", "+0.52%", "-12.5%", "0", "1e3"};
+        for (String value : values) {
+            final Object expected = parser.parse(value);
+            if (expected instanceof Number) {
+                Assert.assertEquals(parser.parseDouble(value), ((Number)expected).doubleValue(), 0d, "Parsed " + value);
+            }
+        }
+        Assert.assertEquals(parser.parseDouble("\t1.5\r"), 1.5d, 0d);
+        Assert.assertEquals(parser.parseDouble(" 2.5K\n"), 2500d, 0d);
+        Assert.assertTrue(Double.isNaN(parser.parseDouble("N/A")));
+        Assert.assertTrue(Double.isNaN(parser.parseDouble("-")));
+        Assert.assertTrue(Double.isNaN(parser.parseDouble("")));
+        Assert.assertTrue(Double.isNaN(parser.parseDouble(null)));
+    }
+
+
+    @Test()
+    public void testParseDoubleRandom() throws Exception {
+        final Random random = new Random(7);
+        final YahooFinanceParser parser = new YahooFinanceParser();
+        for (int i=0; i<10000; ++i) {
+            final String value = String.format(Locale.US, "%." + random.nextInt(8) + "f", (random.nextDouble() - 0.5d) * Math.pow(10, random.nextInt(10)));
+            Assert.assertEquals(parser.parseDouble(value), Double.parseDouble(value), 0d, "Parsed " + value);
+        }
+    }
+
+
+    @Test()
+    public void testParseDateAndTime() throws Exception {
+        final YahooFinanceParser parser = new YahooFinanceParser();
+        Assert.assertEquals(parser.parseDate("6/30/2017"), LocalDate.of(2017, 6, 30));
+        Assert.assertEquals(parser.parseDate("Jun 30, 2017"), LocalDate.of(2017, 6, 30));
+        Assert.assertEquals(parser.parseTime("4:00pm"), LocalTime.of(16, 0));
+        Assert.assertEquals(parser.parseTime("12:15am"), LocalTime.of(0, 15));
+        Assert.assertNull(parser.parseDate("N/A"));
+        Assert.assertNull(parser.parseTime("-"));
+    }
+
+
+    @Test(expectedExceptions = { YahooException.class })
+    public void testParseDateError() throws Exception {
+        new YahooFinanceParser().parseDate("4:00pm");
+    }
+
+}
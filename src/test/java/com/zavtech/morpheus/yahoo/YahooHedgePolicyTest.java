@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the hedged request policy
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooHedgePolicyTest {
+
+
+    @Test()
+    public void testHedgeWins() {
+        final YahooHedgePolicy policy = new YahooHedgePolicy(0.9d, 0.5d, Duration.ofMillis(5));
+        for (int i=0; i<64; ++i) {
+            Assert.assertEquals(policy.execute("T" + i, () -> "T"), "T");
+        }
+        Assert.assertTrue(policy.getThreshold().isPresent(), "Threshold is known after warm up");
+        Assert.assertEquals(policy.getHedgeCount(), 0L, "Fast requests are never hedged");
+        final AtomicInteger calls = new AtomicInteger();
+        final long start = System.nanoTime();
+        final String result = policy.execute("SLOW", () -> {
+            if (calls.incrementAndGet() == 1) {
+                Thread.sleep(10000);
+                return "PRIMARY";
+            } else {
+                return "HEDGE";
+            }
+        });
+        final long millis = (System.nanoTime() - start) / 1000000L;
+        Assert.assertEquals(result, "HEDGE", "The hedge completed first");
+        Assert.assertTrue(millis < 5000, "The slow primary did not set the latency, took " + millis + " millis");
+        Assert.assertEquals(policy.getHedgeCount(), 1L);
+        Assert.assertEquals(policy.getHedgeWinCount(), 1L);
+    }
+
+
+    @Test()
+    public void testCensoredLatency() {
+        final YahooHedgePolicy policy = new YahooHedgePolicy(0.9d, 1d, Duration.ofMillis(1));
+        for (int i=0; i<64; ++i) {
+            final boolean slow = i >= 32;
+            final AtomicInteger calls = new AtomicInteger();
+            policy.execute("T" + i, () -> {
+                Thread.sleep(slow && calls.incrementAndGet() == 1 ? 2000 : 20);
+                return "T";
+            });
+        }
+        final long millis = policy.getThreshold().map(Duration::toMillis).orElse(0L);
+        Assert.assertTrue(policy.getHedgeWinCount() >= 16L, "Slow primaries were beaten by their hedges");
+        Assert.assertTrue(millis >= 35, "Hedge wins record the primary's censored latency, threshold was " + millis + " millis");
+    }
+
+
+    @Test()
+    public void testFailuresRecorded() {
+        final YahooHedgePolicy policy = new YahooHedgePolicy(0.9d, 0.5d, Duration.ofMillis(5));
+        for (int i=0; i<32; ++i) {
+            try {
+                policy.execute("FAIL" + i, () -> {
+                    throw new YahooException("Expected failure");
+                });
+                Assert.fail("The request should have failed");
+            } catch (YahooException ex) {
+                Assert.assertEquals(ex.getMessage(), "Expected failure");
+            }
+        }
+        Assert.assertTrue(policy.getThreshold().isPresent(), "Failed requests contribute latency samples");
+    }
+
+
+    @Test()
+    public void testHedgeRequiresPermit() {
+        final YahooHedgePolicy policy = new YahooHedgePolicy(0.9d, 1d, Duration.ofMillis(5));
+        final Semaphore permits = new Semaphore(2);
+        for (int i=0; i<64; ++i) {
+            permits.acquireUninterruptibly();
+            Assert.assertEquals(policy.execute("T" + i, permits, () -> "T"), "T");
+        }
+        Assert.assertEquals(permits.availablePermits(), 2, "The primary releases the caller's permit");
+        Assert.assertTrue(policy.getThreshold().isPresent(), "Threshold is known after warm up");
+        permits.acquireUninterruptibly(2);
+        final String result = policy.execute("SLOW", permits, () -> {
+            Thread.sleep(200);
+            return "PRIMARY";
+        });
+        permits.release();
+        Assert.assertEquals(result, "PRIMARY");
+        Assert.assertEquals(policy.getHedgeCount(), 0L, "No hedge is sent without a free permit");
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger hedgePermits = new AtomicInteger(-1);
+        permits.acquireUninterruptibly();
+        final String hedged = policy.execute("SLOW", permits, () -> {
+            if (calls.incrementAndGet() == 1) {
+                Thread.sleep(2000);
+                return "PRIMARY";
+            } else {
+                hedgePermits.set(permits.availablePermits());
+                return "HEDGE";
+            }
+        });
+        Assert.assertEquals(hedged, "HEDGE");
+        Assert.assertEquals(hedgePermits.get(), 0, "The hedge holds the free permit while it runs");
+        Assert.assertEquals(policy.getHedgeCount(), 1L);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (permits.availablePermits() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        Assert.assertEquals(permits.availablePermits(), 2, "The hedge and the cancelled primary returned their permits");
+    }
+
+
+    @Test()
+    public void testBoundedThreads() {
+        final YahooHedgePolicy policy = new YahooHedgePolicy(0.9d, 1d, Duration.ofMillis(5), 1);
+        for (int i=0; i<64; ++i) {
+            Assert.assertEquals(policy.execute("T" + i, () -> "T"), "T");
+        }
+        Assert.assertTrue(policy.getThreshold().isPresent(), "Threshold is known after warm up");
+        final AtomicInteger calls = new AtomicInteger();
+        final String result = policy.execute("SLOW", () -> {
+            calls.incrementAndGet();
+            Thread.sleep(200);
+            return "PRIMARY";
+        });
+        Assert.assertEquals(result, "PRIMARY");
+        Assert.assertEquals(calls.get(), 1, "No hedge is sent while every thread is busy");
+        Assert.assertEquals(policy.getHedgeCount(), 0L);
+    }
+
+
+    @Test()
+    public void testBudget() {
+        final YahooHedgePolicy policy = new YahooHedgePolicy(0.5d, 0.1d, Duration.ofMillis(1));
+        for (int i=0; i<64; ++i) {
+            policy.execute("T" + i, () -> {
+                Thread.sleep(2);
+                return "T";
+            });
+        }
+        final long hedges = policy.getHedgeCount();
+        Assert.assertTrue(hedges <= 10, "Hedges are bounded by the budget, was " + hedges);
+    }
+
+
+    @Test(expectedExceptions = { YahooException.class })
+    public void testFailure() {
+        final YahooHedgePolicy policy = new YahooHedgePolicy(0.9d, 0.5d, Duration.ofMillis(5));
+        policy.execute("FAIL", () -> {
+            throw new YahooException("Expected failure");
+        });
+    }
+
+}
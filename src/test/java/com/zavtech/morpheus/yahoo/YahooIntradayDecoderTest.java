@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the byte level Yahoo Finance chart decoder
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooIntradayDecoderTest {
+
+    private static final String CHART_JSON = "{\"chart\":{\"result\":[{\"meta\":{\"currency\":\"USD\",\"symbol\":\"AAPL\",\"previousClose\":170.5," +
+        "\"dataGranularity\":\"1m\"},\"timestamp\":[1600000000,1600000060,1600000120,1600000180]," +
+        "\"indicators\":{\"quote\":[{\"volume\":[1200,null,3400,5600],\"low\":[170.1,null,170.25,169.9]," +
+        "\"open\":[170.2,null,170.3,170.35],\"close\":[170.3,null,170.35,1.7e2],\"high\":[170.4,null,170.5,170.45]}]}}],\"error\":null}}";
+
+
+    @Test()
+    public void testDecode() throws Exception {
+        final YahooIntradayDecoder decoder = new YahooIntradayDecoder(1);
+        final int count = decoder.decode(new ByteArrayInputStream(CHART_JSON.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(count, 3, "Bar with null close is dropped");
+        Assert.assertEquals(decoder.getTimestamp(0), 1600000000000L);
+        Assert.assertEquals(decoder.getTimestamp(1), 1600000120000L);
+        Assert.assertEquals(decoder.getTimestamp(2), 1600000180000L);
+        Assert.assertEquals(decoder.getOpen(1), 170.3d, 0d);
+        Assert.assertEquals(decoder.getHigh(1), 170.5d, 0d);
+        Assert.assertEquals(decoder.getLow(1), 170.25d, 0d);
+        Assert.assertEquals(decoder.getClose(1), 170.35d, 0d);
+        Assert.assertEquals(decoder.getVolume(1), 3400d, 0d);
+        Assert.assertEquals(decoder.getClose(2), 170d, 0d);
+        Assert.assertEquals(decoder.getVolume(2), 5600d, 0d);
+        final int again = decoder.decode(new ByteArrayInputStream(CHART_JSON.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(again, 3, "Decoder can be re-used");
+    }
+
+
+    @Test(expectedExceptions = { YahooException.class })
+    public void testError() throws Exception {
+        final String json = "{\"chart\":{\"result\":null,\"error\":{\"code\":\"Not Found\",\"description\":\"No data found, symbol may be delisted\"}}}";
+        new YahooIntradayDecoder(10).decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
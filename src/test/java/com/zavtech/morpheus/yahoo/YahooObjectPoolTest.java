@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the bounded object pool used to reuse decoders across requests
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooObjectPoolTest {
+
+
+    @Test()
+    public void testReuseAcrossThreads() throws Exception {
+        final AtomicInteger created = new AtomicInteger();
+        final YahooObjectPool<StringBuilder> pool = new YahooObjectPool<>(4, () -> {
+            created.incrementAndGet();
+            return new StringBuilder();
+        });
+        for (int i=0; i<20; ++i) {
+            final Thread thread = new Thread(() -> pool.release(pool.borrow()));
+            thread.start();
+            thread.join();
+        }
+        Assert.assertEquals(created.get(), 1, "A single object is reused by short lived threads");
+        Assert.assertEquals(pool.size(), 1);
+    }
+
+
+    @Test()
+    public void testCapacity() {
+        final YahooObjectPool<StringBuilder> pool = new YahooObjectPool<>(4, StringBuilder::new);
+        final List<StringBuilder> borrowed = new ArrayList<>();
+        for (int i=0; i<10; ++i) {
+            borrowed.add(pool.borrow());
+        }
+        borrowed.forEach(pool::release);
+        Assert.assertEquals(pool.size(), 4, "The pool retains no more than its capacity");
+        for (int i=0; i<4; ++i) {
+            Assert.assertTrue(borrowed.contains(pool.borrow()));
+        }
+        Assert.assertEquals(pool.size(), 0);
+        Assert.assertFalse(borrowed.contains(pool.borrow()), "An empty pool creates a new object");
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the incremental on-disk quote cache
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooQuoteCacheTest {
+
+    private YahooQuoteFixtures fixtures = new YahooQuoteFixtures();
+
+
+    @AfterMethod()
+    public void deleteDirectories() {
+        this.fixtures.deleteDirectories();
+    }
+
+
+    @Test()
+    public void testIncrementalLoads() throws Exception {
+        final File directory = fixtures.createDirectory("yahoo-cache");
+        final YahooQuoteCache cache = new YahooQuoteCache(directory);
+        final List<LocalDate[]> requests = new ArrayList<>();
+        final BiFunction<LocalDate,LocalDate,YahooQuoteBars> loader = (start, end) -> {
+            requests.add(new LocalDate[] {start, end});
+            return YahooQuoteFixtures.createBars(start, end, 1d);
+        };
+
+        final YahooQuoteBars bars1 = cache.read("AAPL", LocalDate.of(2014, 3, 1), LocalDate.of(2014, 6, 1), loader);
+        Assert.assertEquals(requests.size(), 1, "First read downloads entire range");
+        Assert.assertEquals(bars1.size(), YahooQuoteFixtures.createBars(LocalDate.of(2014, 3, 1), LocalDate.of(2014, 6, 1), 1d).size());
+
+        final YahooQuoteBars bars2 = cache.read("AAPL", LocalDate.of(2014, 4, 1), LocalDate.of(2014, 5, 1), loader);
+        Assert.assertEquals(requests.size(), 1, "Read within cached range is served locally");
+        Assert.assertEquals(LocalDate.ofEpochDay(bars2.getDate(0)), LocalDate.of(2014, 4, 1));
+
+        final YahooQuoteBars bars3 = cache.read("AAPL", LocalDate.of(2014, 1, 1), LocalDate.of(2014, 7, 1), loader);
+        Assert.assertEquals(requests.size(), 3, "Head and tail ranges are downloaded");
+        Assert.assertEquals(requests.get(1)[0], LocalDate.of(2014, 1, 1));
+        Assert.assertEquals(requests.get(2)[0], LocalDate.of(2014, 5, 30), "Tail overlaps last cached bar");
+        Assert.assertEquals(bars3.size(), YahooQuoteFixtures.createBars(LocalDate.of(2014, 1, 1), LocalDate.of(2014, 7, 1), 1d).size());
+        for (int i=1; i<bars3.size(); ++i) {
+            Assert.assertTrue(bars3.getDate(i-1) < bars3.getDate(i), "Bars are sorted and unique");
+        }
+    }
+
+
+    @Test()
+    public void testAdjustmentBasisChange() throws Exception {
+        final File directory = fixtures.createDirectory("yahoo-cache");
+        final YahooQuoteCache cache = new YahooQuoteCache(directory);
+        final List<LocalDate[]> requests = new ArrayList<>();
+        cache.read("SPY", LocalDate.of(2014, 1, 1), LocalDate.of(2014, 6, 1), (start, end) -> {
+            requests.add(new LocalDate[] {start, end});
+            return YahooQuoteFixtures.createBars(start, end, 0.95d);
+        });
+        final YahooQuoteBars bars = cache.read("SPY", LocalDate.of(2014, 1, 1), LocalDate.of(2014, 7, 1), (start, end) -> {
+            requests.add(new LocalDate[] {start, end});
+            return YahooQuoteFixtures.createBars(start, end, 0.94d);
+        });
+        Assert.assertEquals(requests.size(), 3, "Full range is downloaded again after a rebase");
+        Assert.assertEquals(requests.get(2)[0], LocalDate.of(2014, 1, 1));
+        for (int i=0; i<bars.size(); ++i) {
+            Assert.assertEquals(bars.getSplitRatio(i), 0.94d, 0d, "All bars share same adjustment basis");
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.zavtech.morpheus.util.TextStreamReader;
+
+/**
+ * A JMH benchmark that compares the byte level quote decoder with the String based line parsing it replaced,
+ * using Yahoo Finance formatted content generated from the quote fixtures in src/test/resources/quotes.
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1G")
+public class YahooQuoteDecoderBenchmark {
+
+    @Param({"AAPL", "IBM", "GE", "MMM", "BLK", "SPY"})
+    private String ticker;
+
+    private byte[] content;
+    private YahooQuoteDecoder decoder;
+
+
+    @Setup()
+    public void setup() throws Exception {
+        this.content = YahooQuoteDecoderTest.toYahooCsv(YahooQuoteDecoderTest.toYahooLines(ticker));
+        this.decoder = new YahooQuoteDecoder(1024);
+    }
+
+
+    @Benchmark()
+    public void decoder(Blackhole blackhole) throws Exception {
+        final int count = decoder.decode(new ByteArrayInputStream(content));
+        for (int i=0; i<count; ++i) {
+            blackhole.consume(decoder.getDate(i));
+            blackhole.consume(decoder.getClose(i));
+            blackhole.consume(decoder.getCloseAdj(i));
+        }
+    }
+
+
+    @Benchmark()
+    public void textReader(Blackhole blackhole) throws Exception {
+        final TextStreamReader reader = new TextStreamReader(new ByteArrayInputStream(content));
+        if (reader.hasNext()) reader.nextLine();
+        while (reader.hasNext()) {
+            final String line = reader.nextLine();
+            final String[] elements = line.split(",");
+            final String[] dateElements = elements[0].trim().split("-");
+            final LocalDate date = LocalDate.of(
+                Integer.parseInt(dateElements[0]),
+                Integer.parseInt(dateElements[1]),
+                Integer.parseInt(dateElements[2])
+            );
+            blackhole.consume(date);
+            blackhole.consume(Double.parseDouble(elements[1]));
+            blackhole.consume(Double.parseDouble(elements[2]));
+            blackhole.consume(Double.parseDouble(elements[3]));
+            blackhole.consume(Double.parseDouble(elements[4]));
+            blackhole.consume(Double.parseDouble(elements[5]));
+            blackhole.consume(Double.parseDouble(elements[6]));
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(YahooQuoteDecoderBenchmark.class.getSimpleName())
+            .addProfiler("gc")
+            .build()
+        ).run();
+    }
+
+}
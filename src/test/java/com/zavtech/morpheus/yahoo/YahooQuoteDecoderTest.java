@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the byte level Yahoo Finance quote decoder
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooQuoteDecoderTest {
+
+
+    @DataProvider(name="tickers")
+    public Object[][] tickers() {
+        return new Object[][] { {"AAPL"}, { "IBM" }, { "GE" }, { "MMM" }, { "BLK" }, { "SPY" } };
+    }
+
+
+    @Test(dataProvider = "tickers")
+    public void testDecodeMatchesParseDouble(String ticker) throws Exception {
+        final List<String[]> lines = toYahooLines(ticker);
+        final byte[] content = toYahooCsv(lines);
+        final YahooQuoteDecoder decoder = new YahooQuoteDecoder(16);
+        final int count = decoder.decode(new ByteArrayInputStream(content));
+        Assert.assertEquals(count, lines.size(), "Decoded all bars for " + ticker);
+        for (int i=0; i<count; ++i) {
+            final String[] values = lines.get(i);
+            Assert.assertEquals(LocalDate.ofEpochDay(decoder.getDate(i)), LocalDate.parse(values[0]));
+            Assert.assertEquals(decoder.getOpen(i), Double.parseDouble(values[1]), 0d);
+            Assert.assertEquals(decoder.getHigh(i), Double.parseDouble(values[2]), 0d);
+            Assert.assertEquals(decoder.getLow(i), Double.parseDouble(values[3]), 0d);
+            Assert.assertEquals(decoder.getClose(i), Double.parseDouble(values[4]), 0d);
+            Assert.assertEquals(decoder.getCloseAdj(i), Double.parseDouble(values[5]), 0d);
+            Assert.assertEquals(decoder.getVolume(i), Double.parseDouble(values[6]), 0d);
+        }
+    }
+
+
+    @Test()
+    public void testColumnProjection() throws Exception {
+        final String content = "Date,Open,High,Low,Close,Adj Close,Volume\n" +
+            "2014-01-03,1.5,2.5,0.5,2.0,1.9,100\n" +
+            "2014-01-06,1.75,2.75,0.75,2.25,2.15,200\n";
+        final YahooQuoteDecoder decoder = new YahooQuoteDecoder(1);
+        final int count = decoder.decode(new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII)), YahooQuoteDecoder.COLUMN_HIGH);
+        Assert.assertEquals(count, 2);
+        for (int i=0; i<count; ++i) {
+            Assert.assertTrue(Double.isNaN(decoder.getOpen(i)), "Open is not decoded");
+            Assert.assertTrue(Double.isNaN(decoder.getLow(i)), "Low is not decoded");
+            Assert.assertTrue(Double.isNaN(decoder.getVolume(i)), "Volume is not decoded");
+        }
+        Assert.assertEquals(decoder.getHigh(1), 2.75d, 0d);
+        Assert.assertEquals(decoder.getClose(1), 2.25d, 0d);
+        Assert.assertEquals(decoder.getCloseAdj(1), 2.15d, 0d);
+    }
+
+
+    @Test()
+    public void testNullValuesAndLineEndings() throws Exception {
+        final String content = "Date,Open,High,Low,Close,Adj Close,Volume\r\n" +
+            "2014-01-02,null,null,null,null,null,null\r\n" +
+            "2014-01-03,-1.25,1.2345678901234567,0.000012,1E2,2.5,100\r\n" +
+            "\r\n" +
+            "2014-01-06,1,2,3,4,5,6";
+        final YahooQuoteDecoder decoder = new YahooQuoteDecoder(1);
+        final int count = decoder.decode(new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII)));
+        Assert.assertEquals(count, 3);
+        Assert.assertTrue(Double.isNaN(decoder.getOpen(0)));
+        Assert.assertTrue(Double.isNaN(decoder.getVolume(0)));
+        Assert.assertEquals(decoder.getOpen(1), -1.25d, 0d);
+        Assert.assertEquals(decoder.getHigh(1), 1.2345678901234567d, 0d);
+        Assert.assertEquals(decoder.getLow(1), 0.000012d, 0d);
+        Assert.assertEquals(decoder.getClose(1), 100d, 0d);
+        Assert.assertEquals(LocalDate.ofEpochDay(decoder.getDate(2)), LocalDate.of(2014, 1, 6));
+        Assert.assertEquals(decoder.getVolume(2), 6d, 0d);
+    }
+
+
+    @Test()
+    public void testEpochDays() {
+        LocalDate date = LocalDate.of(1899, 12, 25);
+        while (date.getYear() < 2101) {
+            final int epochDay = YahooQuoteDecoder.toEpochDay(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+            Assert.assertEquals(epochDay, date.toEpochDay(), "Epoch day matches for " + date);
+            date = date.plusDays(1);
+        }
+    }
+
+
+    @Test()
+    public void testLengthOfMonth() {
+        for (int year=1896; year<=2104; ++year) {
+            for (int month=1; month<=12; ++month) {
+                final int expected = LocalDate.of(year, month, 1).lengthOfMonth();
+                Assert.assertEquals(YahooQuoteDecoder.lengthOfMonth(year, month), expected, "Length matches for " + year + "-" + month);
+            }
+        }
+    }
+
+
+    @Test()
+    public void testInvalidDates() {
+        for (String date : new String[] {"2017-02-29", "2016-02-30", "1900-02-29", "2017-04-31", "2017-13-01", "2017-01-00"}) {
+            final byte[] bytes = date.getBytes();
+            try {
+                YahooQuoteDecoder.parseDate(bytes, 0, bytes.length);
+                Assert.fail("Expected invalid date to be rejected: " + date);
+            } catch (YahooException ex) {
+                Assert.assertTrue(ex.getMessage().startsWith("Invalid date"), "Unexpected message: " + ex.getMessage());
+            }
+        }
+        final byte[] leapDay = "2000-02-29".getBytes();
+        Assert.assertEquals(LocalDate.ofEpochDay(YahooQuoteDecoder.parseDate(leapDay, 0, leapDay.length)), LocalDate.of(2000, 2, 29));
+    }
+
+
+    /**
+     * Returns the Yahoo Finance style CSV lines of Date,Open,High,Low,Close,Adj Close,Volume for a quote fixture
+     * @param ticker    the ticker of the quote fixture
+     * @return          the list of CSV values per line
+     */
+    static List<String[]> toYahooLines(String ticker) throws Exception {
+        final String resource = String.format("/quotes/%s-quotes.csv", ticker.toLowerCase());
+        final List<String[]> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(YahooQuoteDecoderTest.class.getResourceAsStream(resource)))) {
+            reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] values = line.split(",");
+                final double close = Double.parseDouble(values[4]);
+                final double splitRatio = Double.parseDouble(values[6]);
+                final String closeAdj = String.format("%.6f", close * splitRatio);
+                final String volume = String.valueOf((long)Double.parseDouble(values[5]));
+                lines.add(new String[] {values[0], values[1], values[2], values[3], values[4], closeAdj, volume});
+            }
+        }
+        return lines;
+    }
+
+
+    /**
+     * Returns the Yahoo Finance CSV content for the lines specified
+     * @param lines the lines of values
+     * @return      the CSV content bytes
+     */
+    static byte[] toYahooCsv(List<String[]> lines) {
+        final StringBuilder text = new StringBuilder("Date,Open,High,Low,Close,Adj Close,Volume\n");
+        lines.forEach(values -> text.append(String.join(",", values)).append("\n"));
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+}
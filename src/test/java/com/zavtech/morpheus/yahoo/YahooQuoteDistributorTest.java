@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the conflating live quote distributor
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooQuoteDistributorTest {
+
+    private static final YahooField[] FIELDS = { YahooField.PX_LAST };
+
+
+    /**
+     * Returns a quote with a last price
+     * @param ticker    the ticker
+     * @param timestamp the timestamp
+     * @param last      the last price
+     * @return          the quote
+     */
+    private YahooQuoteDistributor.Quote quote(String ticker, long timestamp, double last) {
+        return new YahooQuoteDistributor.Quote(ticker, timestamp, FIELDS, new Object[] { last });
+    }
+
+
+    @Test()
+    public void testConflation() throws Exception {
+        final YahooQuoteDistributor distributor = new YahooQuoteDistributor(10);
+        final YahooQuoteDistributor.Subscription subscription = distributor.subscribe();
+        for (int i=0; i<100; ++i) {
+            distributor.publish(quote("AAPL", i, 170d + i));
+            distributor.publish(quote("MSFT", i, 310d + i));
+        }
+        final List<YahooQuoteDistributor.Quote> quotes = new ArrayList<>();
+        Assert.assertEquals(subscription.drain(quotes::add), 2, "One quote per ticker");
+        Assert.assertEquals(quotes.get(0).getTicker(), "AAPL");
+        Assert.assertEquals(quotes.get(0).getDouble(YahooField.PX_LAST), 269d, 0d, "Latest AAPL quote");
+        Assert.assertEquals(quotes.get(1).getTimestamp(), 99L, "Latest MSFT quote");
+        Assert.assertEquals(subscription.getConflatedCount(), 198L);
+        Assert.assertNull(subscription.poll(), "Nothing left after drain");
+        distributor.publish(quote("MSFT", 100L, 400d));
+        Assert.assertEquals(subscription.poll().getDouble(YahooField.PX_LAST), 400d, 0d);
+        subscription.close();
+        Assert.assertEquals(distributor.getSubscriptionCount(), 0);
+    }
+
+
+    @Test(expectedExceptions = { YahooException.class })
+    public void testMaxTickers() throws Exception {
+        final YahooQuoteDistributor distributor = new YahooQuoteDistributor(2);
+        distributor.publish(quote("AAPL", 0L, 1d));
+        distributor.publish(quote("MSFT", 0L, 1d));
+        distributor.publish(quote("ORCL", 0L, 1d));
+    }
+
+
+    @Test()
+    public void testSlowConsumer() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final YahooQuoteDistributor distributor = new YahooQuoteDistributor(100);
+            final Map<String,Double> latest = new ConcurrentHashMap<>();
+            final CountDownLatch done = new CountDownLatch(1);
+            distributor.subscribe(quote -> {
+                try {
+                    Thread.sleep(1);
+                    latest.put(quote.getTicker(), quote.getDouble(YahooField.PX_LAST));
+                    if (quote.getTicker().equals("T99") && quote.getTimestamp() == 999L && latest.size() == 100) {
+                        done.countDown();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, executor);
+            for (int i=0; i<1000; ++i) {
+                for (int j=0; j<100; ++j) {
+                    distributor.publish(quote("T" + j, i, i));
+                }
+            }
+            distributor.publish(quote("T99", 999L, 999d));
+            Assert.assertTrue(done.await(30, TimeUnit.SECONDS), "Slow consumer reaches the latest state");
+            Assert.assertEquals(latest.get("T99"), 999d, 0d);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test fixtures shared by the quote store and quote cache tests, which also tracks temporary directories for cleanup
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+class YahooQuoteFixtures {
+
+    private List<File> directories = new ArrayList<>();
+
+
+    /**
+     * Returns weekday bars for the date range, excluding the end date as per Yahoo Finance
+     * @param start         the start date
+     * @param end           the end date
+     * @param splitRatio    the split ratio for bars
+     * @return              the bars for range
+     */
+    static YahooQuoteBars createBars(LocalDate start, LocalDate end, double splitRatio) {
+        final YahooQuoteBars bars = new YahooQuoteBars(100);
+        for (LocalDate date = start; date.isBefore(end); date = date.plusDays(1)) {
+            if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+                final double price = 100d + date.toEpochDay() % 97;
+                bars.add((int)date.toEpochDay(), price, price + 1d, price - 1d, price + 0.5d, 1000d * price, splitRatio);
+            }
+        }
+        return bars;
+    }
+
+
+    /**
+     * Returns a newly created temporary directory, which is deleted by deleteDirectories()
+     * @param prefix    the directory name prefix
+     * @return          the temporary directory
+     * @throws IOException  if the directory cannot be created
+     */
+    File createDirectory(String prefix) throws IOException {
+        final File directory = Files.createTempDirectory(prefix).toFile();
+        this.directories.add(directory);
+        return directory;
+    }
+
+
+    /**
+     * Deletes all temporary directories created by this fixture, along with their contents
+     */
+    void deleteDirectories() {
+        this.directories.forEach(YahooQuoteFixtures::delete);
+        this.directories.clear();
+    }
+
+
+    /**
+     * Deletes a file, or a directory and all of its contents
+     * @param file  the file or directory to delete
+     */
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            System.err.println("Failed to delete " + file.getAbsolutePath());
+        }
+    }
+
+}
@@ -16,6 +16,8 @@
 package com.zavtech.morpheus.yahoo;
 
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.stream.IntStream;
 
 import com.zavtech.morpheus.array.Array;
@@ -106,4 +108,49 @@ public class YahooQuoteHistorySourceTest {
         }).cols().select(compare));
     }
 
+
+
+    @Test()
+    public void testBulkQuoteHistory() {
+        final LocalDate start = LocalDate.of(2014, 1, 1);
+        final LocalDate end = LocalDate.of(2015, 2, 4);
+        final Array<String> tickers = Array.of("AAPL", "IBM", "GE", "MMM", "BLK", "SPY");
+        final Map<String,DataFrame<LocalDate,YahooField>> frameMap = new HashMap<>();
+        final YahooFinance yahoo = new YahooFinance();
+        yahoo.getQuoteBars(tickers, start, end, false, (ticker, frame) -> {
+            Assert.assertTrue(frameMap.put(ticker, frame) == null, "Each ticker is only passed to consumer once");
+        });
+        Assert.assertEquals(frameMap.size(), tickers.length());
+        tickers.forEach(ticker -> {
+            final DataFrame<LocalDate,YahooField> quotes = frameMap.get(ticker);
+            Assert.assertTrue(quotes.rowCount() > 0, "There are rows in the frame for " + ticker);
+            fields.forEach(field -> Assert.assertTrue(quotes.cols().contains(field), "The DataFrame contains column for " + field.getName()));
+            Assert.assertTrue(quotes.rows().firstKey().get().compareTo(start) >= 0);
+            Assert.assertTrue(quotes.rows().lastKey().get().compareTo(end) <= 0);
+        });
+    }
+
+
+
+    @Test()
+    public void testPartitionedQuoteHistory() {
+        final LocalDate start = LocalDate.of(1995, 1, 1);
+        final LocalDate end = LocalDate.of(2015, 2, 4);
+        final YahooQuoteHistorySource source = new YahooQuoteHistorySource();
+        final DataFrame<LocalDate,YahooField> expected = source.read(options -> {
+            options.withTicker("SPY");
+            options.withStartDate(start);
+            options.withEndDate(end);
+            options.withDividendAdjusted(true);
+        });
+        final DataFrame<LocalDate,YahooField> actual = source.read(options -> {
+            options.withTicker("SPY");
+            options.withStartDate(start);
+            options.withEndDate(end);
+            options.withDividendAdjusted(true);
+            options.withPartitionYears(3);
+        });
+        DataFrameAsserts.assertEqualsByIndex(actual, expected);
+    }
+
 }
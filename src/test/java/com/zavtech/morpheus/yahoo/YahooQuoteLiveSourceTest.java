@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the live quote source
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooQuoteLiveSourceTest {
+
+
+    @Test()
+    public void testBatches() throws Exception {
+        final List<String> symbols = new ArrayList<>();
+        for (int i=0; i<5000; ++i) {
+            symbols.add("T" + i);
+        }
+        final List<List<String>> batches = YahooQuoteLiveSource.createBatches(symbols, 200, 1500);
+        Assert.assertEquals(batches.size(), 25, "Batches are bounded by count");
+        final List<String> flattened = new ArrayList<>();
+        batches.forEach(batch -> {
+            Assert.assertTrue(batch.size() <= 200, "Batch size is bounded");
+            flattened.addAll(batch);
+        });
+        Assert.assertEquals(flattened, symbols, "Batches preserve all symbols in order");
+    }
+
+
+    @Test()
+    public void testBatchesByLength() throws Exception {
+        final List<String> symbols = Arrays.asList("AAAA", "BBBB", "CCCC", "DDDD", "EEEE");
+        final List<List<String>> batches = YahooQuoteLiveSource.createBatches(symbols, 200, 9);
+        Assert.assertEquals(batches.size(), 3, "Batches are bounded by length including separators");
+        Assert.assertEquals(batches.get(0), Arrays.asList("AAAA", "BBBB"));
+        Assert.assertEquals(batches.get(2), Collections.singletonList("EEEE"));
+        Assert.assertEquals(YahooQuoteLiveSource.createBatches(Collections.singletonList("A"), 1, 1).size(), 1);
+    }
+
+}
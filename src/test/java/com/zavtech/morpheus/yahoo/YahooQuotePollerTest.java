@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.zavtech.morpheus.array.Array;
+import com.zavtech.morpheus.frame.DataFrame;
+
+/**
+ * A unit test for the cell level change detection of the live quote poller
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooQuotePollerTest {
+
+
+    /**
+     * Returns a frame of quotes for AAPL and MSFT
+     * @param last      the last prices
+     * @param exchange  the exchange names
+     * @return          the frame of quotes
+     */
+    private DataFrame<String,YahooField> quotes(double[] last, String... exchange) {
+        return DataFrame.of(Array.of("AAPL", "MSFT"), YahooField.class, columns -> {
+            columns.add(YahooField.PX_LAST, Array.of(last));
+            columns.add(YahooField.EXCHANGE, Array.of(exchange));
+        });
+    }
+
+
+    @Test()
+    public void testChanges() throws Exception {
+        final List<String> tickers = Arrays.asList("AAPL", "MSFT");
+        final List<YahooField> fields = Arrays.asList(YahooField.PX_LAST, YahooField.EXCHANGE);
+        try (YahooQuotePoller poller = new YahooQuotePoller(new YahooQuoteLiveSource(), tickers, fields, Duration.ofSeconds(5))) {
+            Assert.assertFalse(poller.getSnapshot().isPresent(), "No snapshot before first poll");
+            final List<YahooQuotePoller.Change> initial = poller.update(quotes(new double[] {170d, Double.NaN}, "NASDAQ", null));
+            Assert.assertEquals(initial.size(), 2, "First poll publishes non-null cells");
+            final List<YahooQuotePoller.Change> same = poller.update(quotes(new double[] {170d, Double.NaN}, "NASDAQ", null));
+            Assert.assertTrue(same.isEmpty(), "Unchanged quotes publish nothing");
+            final List<YahooQuotePoller.Change> changes = poller.update(quotes(new double[] {170d, 310.5d}, "NASDAQ", "NASDAQ"));
+            Assert.assertEquals(changes.size(), 2);
+            Assert.assertEquals(changes.get(0).getTicker(), "MSFT");
+            Assert.assertEquals(changes.get(0).getField(), YahooField.PX_LAST);
+            Assert.assertTrue(Double.isNaN((Double)changes.get(0).getOldValue()));
+            Assert.assertEquals(changes.get(0).getNewValue(), 310.5d);
+            Assert.assertEquals(changes.get(1).getField(), YahooField.EXCHANGE);
+            Assert.assertEquals(changes.get(1).getOldValue(), null);
+            Assert.assertEquals(changes.get(1).getNewValue(), "NASDAQ");
+            final DataFrame<String,YahooField> snapshot = poller.getSnapshot().orElseThrow(() -> new AssertionError("Missing snapshot"));
+            Assert.assertEquals(snapshot.data().getDouble("MSFT", YahooField.PX_LAST), 310.5d, 0d);
+        }
+    }
+
+}
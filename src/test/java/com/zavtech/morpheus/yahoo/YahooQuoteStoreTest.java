@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.File;
+import java.time.LocalDate;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the memory mapped columnar quote store
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooQuoteStoreTest {
+
+    private YahooQuoteFixtures fixtures = new YahooQuoteFixtures();
+
+
+    @AfterMethod()
+    public void deleteDirectories() {
+        this.fixtures.deleteDirectories();
+    }
+
+
+    @Test()
+    public void testWriteAndRead() throws Exception {
+        final File directory = fixtures.createDirectory("yahoo-store");
+        final YahooQuoteStore store = new YahooQuoteStore(directory);
+        final LocalDate start = LocalDate.of(2014, 1, 1);
+        final LocalDate end = LocalDate.of(2015, 1, 1);
+        final YahooQuoteBars expected = YahooQuoteFixtures.createBars(start, end, 0.98d);
+        store.write("BRK-B", start, end, expected);
+        Assert.assertTrue(store.contains("BRK-B"));
+        Assert.assertEquals(store.getStartDate("BRK-B").get(), start);
+        Assert.assertEquals(store.getEndDate("BRK-B").get(), end);
+        assertBars(store.read("BRK-B", start, end), expected);
+        final YahooQuoteBars range = store.read("BRK-B", LocalDate.of(2014, 3, 1), LocalDate.of(2014, 3, 31));
+        assertBars(range, expected.range((int)LocalDate.of(2014, 3, 1).toEpochDay(), (int)LocalDate.of(2014, 3, 31).toEpochDay()));
+        Assert.assertTrue(store.delete("BRK-B"));
+        Assert.assertTrue(!store.contains("BRK-B"));
+        Assert.assertTrue(store.read("BRK-B", start, end) == null);
+    }
+
+
+    @Test()
+    public void testAppend() throws Exception {
+        final File directory = fixtures.createDirectory("yahoo-store");
+        final YahooQuoteStore store = new YahooQuoteStore(directory);
+        final LocalDate start = LocalDate.of(2014, 1, 1);
+        final LocalDate middle = LocalDate.of(2014, 2, 1);
+        final LocalDate end = LocalDate.of(2018, 1, 1);
+        store.write("AAPL", start, middle, YahooQuoteFixtures.createBars(start, middle, 0.98d));
+        try (YahooQuoteStore.Writer writer = store.writer("AAPL")) {
+            writer.append(YahooQuoteFixtures.createBars(middle.minusDays(3), middle.plusDays(10), 0.98d), middle.minusDays(3), middle.plusDays(10));
+            writer.append(YahooQuoteFixtures.createBars(middle.plusDays(10), end, 0.98d), middle.plusDays(10), end);
+        }
+        Assert.assertEquals(store.getStartDate("AAPL").get(), start);
+        Assert.assertEquals(store.getEndDate("AAPL").get(), end);
+        assertBars(store.read("AAPL", start, end), YahooQuoteFixtures.createBars(start, end, 0.98d));
+    }
+
+
+    /**
+     * Asserts that two series of bars are equal
+     * @param actual    the actual bars
+     * @param expected  the expected bars
+     */
+    private void assertBars(YahooQuoteBars actual, YahooQuoteBars expected) {
+        Assert.assertEquals(actual.size(), expected.size(), "Bar counts match");
+        for (int i=0; i<expected.size(); ++i) {
+            Assert.assertEquals(actual.getDate(i), expected.getDate(i));
+            Assert.assertEquals(actual.getOpen(i), expected.getOpen(i), 0d);
+            Assert.assertEquals(actual.getHigh(i), expected.getHigh(i), 0d);
+            Assert.assertEquals(actual.getLow(i), expected.getLow(i), 0d);
+            Assert.assertEquals(actual.getClose(i), expected.getClose(i), 0d);
+            Assert.assertEquals(actual.getVolume(i), expected.getVolume(i), 0d);
+            Assert.assertEquals(actual.getSplitRatio(i), expected.getSplitRatio(i), 0d);
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.zavtech.morpheus.array.Array;
+import com.zavtech.morpheus.frame.DataFrame;
+
+/**
+ * A JMH benchmark that compares the primitive return kernels with the per-cell applyDoubles() lookups they replaced,
+ * using a random walk of close prices over a range of history lengths.
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1G")
+public class YahooReturnKernelsBenchmark {
+
+    @Param({"250", "2500", "12500"})
+    private int rowCount;
+
+    private DataFrame<LocalDate,YahooField> quotes;
+
+
+    @Setup()
+    public void setup() {
+        final Random random = new Random(1234);
+        final double[] prices = new double[rowCount];
+        final Array<LocalDate> dates = Array.of(LocalDate.class, rowCount);
+        for (int i=0; i<rowCount; ++i) {
+            prices[i] = i == 0 ? 100d : prices[i-1] * (1d + random.nextGaussian() * 0.01d);
+            dates.setValue(i, LocalDate.of(1970, 1, 1).plusDays(i));
+        }
+        this.quotes = DataFrame.of(dates, YahooField.class, columns -> {
+            columns.add(YahooField.PX_CLOSE, Array.of(prices));
+        });
+    }
+
+
+    @Benchmark()
+    public DataFrame<LocalDate,String> applyDoubles() {
+        final Array<LocalDate> rowKeys = quotes.rows().keyArray();
+        return DataFrame.of(rowKeys, String.class, columns -> {
+            columns.add("SPY", Double.class).applyDoubles(v -> {
+                final int rowOrdinal = v.rowOrdinal();
+                if (rowOrdinal == 0) {
+                    return 0d;
+                } else {
+                    final double p0 = quotes.data().getDouble(rowOrdinal-1, YahooField.PX_CLOSE);
+                    final double p1 = quotes.data().getDouble(rowOrdinal, YahooField.PX_CLOSE);
+                    return p1 / p0 - 1d;
+                }
+            });
+        });
+    }
+
+
+    @Benchmark()
+    public DataFrame<LocalDate,String> kernel() {
+        final Array<LocalDate> rowKeys = quotes.rows().keyArray();
+        final double[] prices = YahooReturnSource.getClosePrices(quotes);
+        final double[] returns = new double[prices.length];
+        YahooReturnKernels.simple(prices, 0, prices.length, returns);
+        return DataFrame.of(rowKeys, String.class, columns -> {
+            columns.add("SPY", Array.of(returns));
+        });
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(YahooReturnKernelsBenchmark.class.getSimpleName())
+            .addProfiler("gc")
+            .build()
+        ).run();
+    }
+
+}
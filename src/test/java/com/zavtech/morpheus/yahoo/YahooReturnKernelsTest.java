@@ -0,0 +1,248 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the primitive return kernels
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooReturnKernelsTest {
+
+    private double[] prices = { 100d, 101d, 99.5d, 102.25d, 103d, 101.75d, 104d };
+
+
+    @Test()
+    public void testSimpleAndLog() {
+        final double[] simple = new double[prices.length];
+        final double[] log = new double[prices.length];
+        YahooReturnKernels.simple(prices, 0, prices.length, simple);
+        YahooReturnKernels.log(prices, 0, prices.length, log);
+        Assert.assertEquals(simple[0], 0d, 0d);
+        Assert.assertEquals(log[0], 0d, 0d);
+        for (int i=1; i<prices.length; ++i) {
+            Assert.assertEquals(simple[i], prices[i] / prices[i-1] - 1d, 0d);
+            Assert.assertEquals(log[i], Math.log(prices[i] / prices[i-1]), 0d);
+        }
+    }
+
+
+    @Test()
+    public void testCumulative() {
+        final double[] result = new double[prices.length - 2];
+        YahooReturnKernels.cumulative(prices, 2, prices.length, result);
+        for (int i=0; i<result.length; ++i) {
+            Assert.assertEquals(result[i], prices[i+2] / prices[2] - 1d, 0d);
+        }
+    }
+
+
+    @Test()
+    public void testPeriod() {
+        final double[] result = new double[prices.length - 1];
+        YahooReturnKernels.period(prices, 3, 1, prices.length, result);
+        Assert.assertEquals(result[0], 0d, 0d);
+        Assert.assertTrue(Double.isNaN(result[1]), "No return where there are insufficient prior prices");
+        for (int i=2; i<result.length; ++i) {
+            Assert.assertEquals(result[i], prices[i+1] / prices[i-2] - 1d, 0d);
+        }
+    }
+
+
+    @Test()
+    public void testPeriodEnds() {
+        final long[] keys = { 1, 1, 1, 2, 2, 3, 4, 4 };
+        final int[] ends = new int[keys.length];
+        final int count = YahooReturnKernels.periodEnds(keys, ends);
+        Assert.assertEquals(count, 4);
+        Assert.assertEquals(ends[0], 2);
+        Assert.assertEquals(ends[1], 4);
+        Assert.assertEquals(ends[2], 5);
+        Assert.assertEquals(ends[3], 7);
+        Assert.assertEquals(YahooReturnKernels.periodEnds(new long[0], new int[0]), 0);
+    }
+
+
+    @Test()
+    public void testResampled() {
+        final int[] ends = { 1, 3, 6 };
+        final double[] result = new double[ends.length];
+        YahooReturnKernels.resampled(prices, ends, ends.length, result);
+        Assert.assertTrue(Double.isNaN(result[0]), "No return for first period end");
+        Assert.assertEquals(result[1], prices[3] / prices[1] - 1d, 0d);
+        Assert.assertEquals(result[2], prices[6] / prices[3] - 1d, 0d);
+    }
+
+
+    @Test()
+    public void testSubtract() {
+        final long[] keys = { 1, 2, 4, 5, 7 };
+        final long[] otherKeys = { 0, 2, 3, 5 };
+        final double[] other = { 0.5d, 0.25d, 0.125d, 0.0625d };
+        final double[] exact = { 1d, 1d, 1d, 1d, 1d };
+        final double[] asOf = { 1d, 1d, 1d, 1d, 1d };
+        YahooReturnKernels.subtract(keys, exact, otherKeys, other, false);
+        YahooReturnKernels.subtract(keys, asOf, otherKeys, other, true);
+        Assert.assertTrue(Double.isNaN(exact[0]), "No exact match for key 1");
+        Assert.assertEquals(exact[1], 0.75d, 0d);
+        Assert.assertTrue(Double.isNaN(exact[2]), "No exact match for key 4");
+        Assert.assertEquals(exact[3], 0.9375d, 0d);
+        Assert.assertTrue(Double.isNaN(exact[4]), "No exact match for key 7");
+        Assert.assertEquals(asOf[0], 0.5d, 0d);
+        Assert.assertEquals(asOf[1], 0.75d, 0d);
+        Assert.assertEquals(asOf[2], 0.875d, 0d);
+        Assert.assertEquals(asOf[3], 0.9375d, 0d);
+        Assert.assertEquals(asOf[4], 0.9375d, 0d);
+    }
+
+
+    @Test()
+    public void testLog1p() {
+        final double[] simple = new double[prices.length];
+        final double[] log = new double[prices.length];
+        YahooReturnKernels.cumulative(prices, 0, prices.length, simple);
+        YahooReturnKernels.log1p(simple, simple.length);
+        for (int i=0; i<prices.length; ++i) {
+            log[i] = Math.log(prices[i] / prices[0]);
+            Assert.assertEquals(simple[i], log[i], 1e-12);
+        }
+    }
+
+
+    @Test()
+    public void testRebase() {
+        final double[] full = new double[prices.length];
+        final double[] tail = new double[prices.length - 3];
+        YahooReturnKernels.cumulative(prices, 0, prices.length, full);
+        YahooReturnKernels.cumulative(prices, 3, prices.length, tail);
+        YahooReturnKernels.rebase(tail, 1, tail.length, tail[0], full[3], false);
+        for (int i=1; i<tail.length; ++i) {
+            Assert.assertEquals(tail[i], full[i+3], 1e-12);
+        }
+        YahooReturnKernels.log1p(full, full.length);
+        YahooReturnKernels.cumulative(prices, 3, prices.length, tail);
+        YahooReturnKernels.log1p(tail, tail.length);
+        YahooReturnKernels.rebase(tail, 1, tail.length, tail[0], full[3], true);
+        for (int i=1; i<tail.length; ++i) {
+            Assert.assertEquals(tail[i], full[i+3], 1e-12);
+        }
+    }
+
+
+    @Test()
+    public void testEmaContinuation() {
+        final double alpha = YahooReturnKernels.emaAlpha(3);
+        Assert.assertEquals(Math.pow(1d - alpha, 3), 0.5d, 1e-12);
+        final double[] full = { 1d, 2d, Double.NaN, 4d, 5d, 6d };
+        final double[] head = Arrays.copyOfRange(full, 0, 3);
+        final double[] tail = Arrays.copyOfRange(full, 3, full.length);
+        YahooReturnKernels.ema(full, full.length, alpha, Double.NaN);
+        final double state = YahooReturnKernels.ema(head, head.length, alpha, Double.NaN);
+        YahooReturnKernels.ema(tail, tail.length, alpha, state);
+        Assert.assertEquals(full[0], 1d, 0d);
+        Assert.assertEquals(full[1], alpha * 2d + (1d - alpha), 1e-12);
+        Assert.assertTrue(Double.isNaN(full[2]), "NaN values are preserved");
+        for (int i=0; i<tail.length; ++i) {
+            Assert.assertEquals(tail[i], full[i+3], 0d);
+        }
+    }
+
+
+    @Test()
+    public void testUnionAndAlign() {
+        final long[][] keys = { { 2, 4, 6, 8 }, { }, { 1, 2, 3 }, { 8, 9 }, { 4 } };
+        final long[] union = YahooReturnKernels.union(keys);
+        Assert.assertTrue(Arrays.equals(union, new long[] { 1, 2, 3, 4, 6, 8, 9 }), "Union is sorted and distinct");
+        final double[] column = new double[union.length];
+        YahooReturnKernels.align(union, keys[0], new double[] { 0.2d, 0.4d, 0.6d, 0.8d }, column);
+        Assert.assertTrue(Double.isNaN(column[0]), "No value for key 1");
+        Assert.assertEquals(column[1], 0.2d, 0d);
+        Assert.assertTrue(Double.isNaN(column[2]), "No value for key 3");
+        Assert.assertEquals(column[3], 0.4d, 0d);
+        Assert.assertEquals(column[4], 0.6d, 0d);
+        Assert.assertEquals(column[5], 0.8d, 0d);
+        Assert.assertTrue(Double.isNaN(column[6]), "No value for key 9");
+        Assert.assertEquals(YahooReturnKernels.union(new long[0][]).length, 0);
+    }
+
+
+    @Test()
+    public void testUnionRandom() {
+        final Random random = new Random(7);
+        final long[][] keys = new long[50][];
+        final TreeSet<Long> expected = new TreeSet<>();
+        for (int j=0; j<keys.length; ++j) {
+            keys[j] = random.longs(random.nextInt(100), 0, 500).distinct().sorted().toArray();
+            for (long key : keys[j]) {
+                expected.add(key);
+            }
+        }
+        final long[] union = YahooReturnKernels.union(keys);
+        Assert.assertTrue(Arrays.equals(union, expected.stream().mapToLong(Long::longValue).toArray()), "Union is sorted and distinct");
+    }
+
+
+    @Test()
+    public void testRollingWindows() {
+        final Random random = new Random(11);
+        final double[] raw = new double[500];
+        for (int i=0; i<raw.length; ++i) {
+            raw[i] = i == 200 ? Double.NaN : random.nextGaussian() * 0.01d;
+        }
+        final int[] windows = { 5, 20, 60 };
+        final double[][] sum = new double[windows.length][raw.length];
+        final double[][] mean = new double[windows.length][raw.length];
+        final double[][] std = { null, new double[raw.length], new double[raw.length] };
+        final double[] values = raw.clone();
+        final double[] ema = raw.clone();
+        final double alpha = YahooReturnKernels.emaAlpha(10);
+        YahooReturnKernels.smooth(values, values.length, alpha, Double.NaN, windows, sum, mean, std);
+        YahooReturnKernels.ema(ema, ema.length, alpha, Double.NaN);
+        Assert.assertTrue(Arrays.equals(values, ema), "EMA matches the stand alone kernel");
+        for (int k=0; k<windows.length; ++k) {
+            final int window = windows[k];
+            for (int i=0; i<raw.length; ++i) {
+                double total = 0d;
+                double squares = 0d;
+                for (int j=Math.max(0, i-window+1); j<=i; ++j) {
+                    total += raw[j];
+                    squares += raw[j] * raw[j];
+                }
+                if (i < window - 1 || Double.isNaN(total)) {
+                    Assert.assertTrue(Double.isNaN(sum[k][i]), "Incomplete window has no sum");
+                    Assert.assertTrue(Double.isNaN(mean[k][i]), "Incomplete window has no mean");
+                } else {
+                    final double expectedStd = Math.sqrt((squares - total * total / window) / (window - 1));
+                    Assert.assertEquals(sum[k][i], total, 1e-12);
+                    Assert.assertEquals(mean[k][i], total / window, 1e-12);
+                    if (std[k] != null) {
+                        Assert.assertEquals(std[k][i], expectedStd, 1e-10);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -15,7 +15,13 @@
  */
 package com.zavtech.morpheus.yahoo;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -25,6 +31,8 @@ import com.zavtech.morpheus.frame.DataFrame;
 import com.zavtech.morpheus.frame.DataFrameAsserts;
 import com.zavtech.morpheus.frame.DataFrameSource;
 import com.zavtech.morpheus.util.Asserts;
+import com.zavtech.morpheus.util.Collect;
+import com.zavtech.morpheus.util.IO;
 
 /**
  * A unit test for the YahooReturnSource
@@ -129,6 +137,71 @@ public class YahooReturnSourceTest {
 
 
 
+    @Test()
+    public void testMonthEndReturns() {
+        final YahooReturnSource source = DataFrameSource.lookup(YahooReturnSource.class);
+        final DataFrame<LocalDate,String> returns = source.read(options -> {
+            options.monthEnd();
+            options.withTickers("AAPL", "SPY");
+            options.withStartDate(LocalDate.of(2014, 1, 1));
+            options.withEndDate(LocalDate.of(2015, 2, 4));
+        });
+        returns.out().print();
+        Asserts.assertEquals(returns.rowCount(), 14, "Has one row per month end plus the partial last month");
+        Assert.assertEquals(returns.rows().firstKey().get(), LocalDate.of(2014, 1, 31));
+        Assert.assertEquals(returns.rows().key(1), LocalDate.of(2014, 2, 28));
+        Assert.assertEquals(returns.rows().lastKey().get(), LocalDate.of(2015, 2, 3));
+        returns.cols().forEach(column -> column.forEachValue(v -> {
+            Assert.assertTrue(!Double.isNaN(v.getDouble()), "Every month has a prior month end from the seed data");
+        }));
+    }
+
+
+    @Test()
+    public void testWeekEndReturns() {
+        final YahooReturnSource source = DataFrameSource.lookup(YahooReturnSource.class);
+        final DataFrame<LocalDate,String> returns = source.read(options -> {
+            options.weekEnd();
+            options.withTickers("AAPL", "SPY");
+            options.withStartDate(LocalDate.of(2014, 1, 1));
+            options.withEndDate(LocalDate.of(2015, 2, 4));
+        });
+        returns.out().print();
+        Assert.assertEquals(returns.rows().firstKey().get(), LocalDate.of(2014, 1, 3));
+        Assert.assertEquals(returns.rows().key(1), LocalDate.of(2014, 1, 10));
+        Assert.assertEquals(returns.rows().lastKey().get(), LocalDate.of(2015, 2, 3));
+    }
+
+
+    @Test()
+    public void testBenchmarkLogReturns() {
+        final YahooReturnSource source = DataFrameSource.lookup(YahooReturnSource.class);
+        final DataFrame<LocalDate,String> returns = source.read(options -> {
+            options.daily();
+            options.withTickers("AAPL", "SPY");
+            options.withLogReturns(true);
+            options.withStartDate(LocalDate.of(2014, 1, 1));
+            options.withEndDate(LocalDate.of(2015, 2, 4));
+        });
+        final DataFrame<LocalDate,String> relative = source.read(options -> {
+            options.daily();
+            options.withTickers("AAPL");
+            options.withLogReturns(true);
+            options.withBenchmark("SPY");
+            options.withStartDate(LocalDate.of(2014, 1, 1));
+            options.withEndDate(LocalDate.of(2015, 2, 4));
+        });
+        relative.out().print();
+        Assert.assertEquals(relative.rowCount(), returns.rowCount(), "Has expected row count");
+        Assert.assertEquals(relative.colCount(), 1, "Has only the requested ticker");
+        for (int i=0; i<returns.rowCount(); ++i) {
+            final double aapl = returns.data().getDouble(i, "AAPL");
+            final double spy = returns.data().getDouble(i, "SPY");
+            Assert.assertEquals(relative.data().getDouble(i, "AAPL"), aapl - spy, 1e-12);
+        }
+    }
+
+
     @Test()
     public void testCumulativeReturns() {
         final YahooReturnSource source = DataFrameSource.lookup(YahooReturnSource.class);
@@ -157,7 +230,145 @@ public class YahooReturnSourceTest {
     }
 
 
+    @Test()
+    public void testConcurrentReads() throws Exception {
+        final YahooReturnSource source = DataFrameSource.lookup(YahooReturnSource.class);
+        final CompletableFuture<DataFrame<LocalDate,String>> daily = CompletableFuture.supplyAsync(() -> source.read(options -> {
+            options.daily();
+            options.withTickers("AAPL", "SPY", "MSFT");
+            options.withStartDate(LocalDate.of(2014, 1, 1));
+            options.withEndDate(LocalDate.of(2015, 2, 4));
+        }));
+        final CompletableFuture<DataFrame<LocalDate,String>> cumulative = CompletableFuture.supplyAsync(() -> source.read(options -> {
+            options.cumulative();
+            options.withTickers("SPY", "MSFT", "AAPL");
+            options.withStartDate(LocalDate.of(2014, 1, 1));
+            options.withEndDate(LocalDate.of(2015, 2, 4));
+        }));
+        Assert.assertEquals(daily.get().rowCount(), 274, "Has expected row count");
+        Assert.assertEquals(cumulative.get().rowCount(), 274, "Has expected row count");
+        Assert.assertEquals(daily.get().colCount(), 3, "Has expected column count");
+        Assert.assertEquals(cumulative.get().colCount(), 3, "Has expected column count");
+    }
+
+
+    @Test()
+    public void testIncrementalUpdate() {
+        final YahooReturnSource source = DataFrameSource.lookup(YahooReturnSource.class);
+        final LocalDate start = LocalDate.of(2014, 1, 1);
+        final LocalDate end = LocalDate.of(2015, 2, 4);
+        for (boolean cumulative : new boolean[] { false, true }) {
+            final Consumer<YahooReturnSource.Options> type = options -> {
+                if (cumulative) {
+                    options.cumulative();
+                } else {
+                    options.daily().withEmaHalfLife(5);
+                }
+            };
+            final DataFrame<LocalDate,String> full = source.read(options -> {
+                type.accept(options);
+                options.withTickers("AAPL", "SPY");
+                options.withStartDate(start);
+                options.withEndDate(end);
+            });
+            final DataFrame<LocalDate,String> previous = source.read(options -> {
+                type.accept(options);
+                options.withTickers("AAPL", "SPY");
+                options.withStartDate(start);
+                options.withEndDate(LocalDate.of(2014, 12, 1));
+            });
+            final DataFrame<LocalDate,String> updated = source.update(previous, end, type);
+            Assert.assertEquals(updated.rowCount(), full.rowCount(), "Has expected row count");
+            Assert.assertEquals(updated.rows().lastKey().get(), full.rows().lastKey().get());
+            for (int i=0; i<full.rowCount(); ++i) {
+                Assert.assertEquals(updated.rows().key(i), full.rows().key(i));
+                Assert.assertEquals(updated.data().getDouble(i, "AAPL"), full.data().getDouble(i, "AAPL"), 1e-10);
+                Assert.assertEquals(updated.data().getDouble(i, "SPY"), full.data().getDouble(i, "SPY"), 1e-10);
+            }
+        }
+    }
 
 
+    @Test()
+    public void testPartialResults() {
+        final YahooReturnSource source = DataFrameSource.lookup(YahooReturnSource.class);
+        final List<YahooReturnSource.TickerStatus> report = new ArrayList<>();
+        final DataFrame<LocalDate,String> returns = source.read(options -> {
+            options.daily();
+            options.withTickers("AAPL", "XXXXXXXX", "SPY");
+            options.withStartDate(LocalDate.of(2014, 1, 1));
+            options.withEndDate(LocalDate.of(2015, 2, 4));
+            options.withDeadline(Duration.ofSeconds(30));
+            options.withPartialResults(true);
+            options.withStatusHandler(report::addAll);
+        });
+        report.forEach(IO::println);
+        Assert.assertEquals(returns.colCount(), 2, "Only completed tickers are included");
+        Assert.assertTrue(returns.cols().containsAll(Array.of("AAPL", "SPY")), "Has expected tickers");
+        Assert.assertEquals(report.size(), 3, "Every ticker is reported");
+        Assert.assertEquals(report.get(0).getStatus(), YahooReturnSource.Status.OK);
+        Assert.assertEquals(report.get(1).getStatus(), YahooReturnSource.Status.FAILED);
+        Assert.assertEquals(report.get(2).getStatus(), YahooReturnSource.Status.OK);
+        Assert.assertTrue(report.get(1).getReason() != null, "Failed ticker has a reason");
+    }
+
+
+    @Test()
+    public void testBenchmarkFailure() {
+        final YahooReturnSource source = DataFrameSource.lookup(YahooReturnSource.class);
+        final List<YahooReturnSource.TickerStatus> report = new ArrayList<>();
+        try {
+            source.read(options -> {
+                options.daily();
+                options.withTickers("AAPL", "SPY");
+                options.withBenchmark("XXXXXXXX");
+                options.withStartDate(LocalDate.of(2014, 1, 1));
+                options.withEndDate(LocalDate.of(2015, 2, 4));
+                options.withDeadline(Duration.ofSeconds(30));
+                options.withPartialResults(true);
+                options.withStatusHandler(report::addAll);
+            });
+            Assert.fail("A failed benchmark should fail the request");
+        } catch (YahooException ex) {
+            report.forEach(IO::println);
+            Assert.assertEquals(report.size(), 3, "Benchmark is reported once ahead of the tickers");
+            Assert.assertEquals(report.get(0).getTicker(), "XXXXXXXX");
+            Assert.assertEquals(report.get(0).getStatus(), YahooReturnSource.Status.FAILED);
+            Assert.assertEquals(report.get(1).getStatus(), YahooReturnSource.Status.OK, "Benchmark failure is not copied onto tickers");
+            Assert.assertEquals(report.get(2).getStatus(), YahooReturnSource.Status.OK, "Benchmark failure is not copied onto tickers");
+        }
+    }
+
+
+    @Test(expectedExceptions = { YahooException.class })
+    public void testFailureWithoutPartialResults() {
+        final YahooReturnSource source = DataFrameSource.lookup(YahooReturnSource.class);
+        source.read(options -> {
+            options.daily();
+            options.withTickers("AAPL", "XXXXXXXX");
+            options.withStartDate(LocalDate.of(2014, 1, 1));
+            options.withEndDate(LocalDate.of(2015, 2, 4));
+        });
+    }
+
+
+    @Test()
+    public void testRollingStatistics() {
+        final YahooReturnSource source = DataFrameSource.lookup(YahooReturnSource.class);
+        final DataFrame<LocalDate,String> returns = source.read(options -> {
+            options.daily();
+            options.withTickers("AAPL", "SPY");
+            options.withStartDate(LocalDate.of(2014, 1, 1));
+            options.withEndDate(LocalDate.of(2015, 2, 4));
+            options.withRollingMean(20);
+            options.withRollingStd(20, 60);
+        });
+        returns.out().print();
+        Assert.assertEquals(returns.rowCount(), 274, "Has expected row count");
+        final List<String> columns = Collect.asList(returns.cols().keyArray());
+        Assert.assertEquals(columns, Arrays.asList("AAPL", "AAPL.mean20", "AAPL.std20", "AAPL.std60", "SPY", "SPY.mean20", "SPY.std20", "SPY.std60"));
+        Assert.assertTrue(Double.isNaN(returns.data().getDouble(18, "SPY.std20")), "Window is not yet full");
+        Assert.assertTrue(returns.data().getDouble(19, "SPY.std20") > 0d, "Window is full");
+    }
 
 }
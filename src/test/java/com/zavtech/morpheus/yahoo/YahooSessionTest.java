@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * A unit test for the Yahoo Finance session
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooSessionTest {
+
+
+    @Test()
+    public void testPersistedSession() throws Exception {
+        final File file = new File(Files.createTempDirectory("yahoo-session").toFile(), "session.properties");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("crumb=abc123\n");
+            writer.write("cookie.B=xyz\n");
+        }
+        final YahooSession session = new YahooSession(file);
+        final YahooSession.Credentials credentials = session.getCredentials();
+        Assert.assertEquals(credentials.getCrumb(), "abc123");
+        Assert.assertEquals(credentials.getCookies().get("B"), "xyz");
+        Assert.assertTrue(session.getCredentials() == credentials, "Credentials are reused across calls");
+        final AtomicInteger count = new AtomicInteger();
+        final String result = session.execute(c -> {
+            count.incrementAndGet();
+            return c.getCrumb();
+        });
+        Assert.assertEquals(result, "abc123");
+        Assert.assertEquals(count.get(), 1);
+        session.invalidate();
+        Assert.assertTrue(!file.exists(), "Session file is removed on invalidate");
+    }
+
+
+    @Test(expectedExceptions = { IllegalStateException.class })
+    public void testNonAuthFailuresAreNotRetried() throws Exception {
+        final File file = new File(Files.createTempDirectory("yahoo-session").toFile(), "session.properties");
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("crumb=abc123\n");
+            writer.write("cookie.B=xyz\n");
+        }
+        final AtomicInteger count = new AtomicInteger();
+        new YahooSession(file).execute(c -> {
+            Assert.assertEquals(count.incrementAndGet(), 1, "Request is only attempted once");
+            throw new IllegalStateException("Not an auth failure");
+        });
+    }
+
+
+    @Test()
+    public void testConcurrentExpiry() throws Exception {
+        final int threads = 16;
+        final AtomicInteger handshakes = new AtomicInteger();
+        final YahooSession session = new YahooSession(null, Duration.ofSeconds(5), Duration.ofSeconds(15), () -> {
+            final int count = handshakes.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                throw new YahooException("Interrupted during handshake", ex);
+            }
+            return new YahooSession.Credentials(Collections.singletonMap("B", "cookie" + count), "crumb" + count);
+        });
+        Assert.assertEquals(session.getCredentials().getCrumb(), "crumb1");
+        Assert.assertEquals(handshakes.get(), 1, "The first request performs the handshake");
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<AtomicInteger> attempts = new ArrayList<>();
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i=0; i<threads; ++i) {
+                final AtomicInteger count = new AtomicInteger();
+                attempts.add(count);
+                futures.add(executor.submit(() -> session.execute(credentials -> {
+                    count.incrementAndGet();
+                    if (credentials.getCrumb().equals("crumb1")) {
+                        try {
+                            barrier.await();
+                        } catch (Exception ex) {
+                            throw new YahooException("Barrier failed", ex);
+                        }
+                        throw new YahooSession.ExpiredException("Stale credentials");
+                    } else {
+                        return credentials.getCrumb() + ":" + credentials.getCookies().get("B");
+                    }
+                })));
+            }
+            for (Future<String> future : futures) {
+                Assert.assertEquals(future.get(), "crumb2:cookie2", "Each request is retried with the new credentials");
+            }
+            Assert.assertEquals(handshakes.get(), 2, "Concurrent expiries trigger exactly one refresh");
+            attempts.forEach(count -> Assert.assertEquals(count.get(), 2, "Each request is retried exactly once"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
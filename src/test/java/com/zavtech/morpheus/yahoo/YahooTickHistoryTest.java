@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2014-2017 Xavier Witdouck
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.zavtech.morpheus.yahoo;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.zavtech.morpheus.array.Array;
+import com.zavtech.morpheus.frame.DataFrame;
+import com.zavtech.morpheus.util.Collect;
+
+/**
+ * A unit test for the bounded tick history of live quotes
+ *
+ * @author Xavier Witdouck
+ *
+ * <p><strong>This is open source software released under the <a href="http://www.apache.org/licenses/LICENSE-2.0">Apache 2.0 License</a></strong></p>
+ */
+public class YahooTickHistoryTest {
+
+
+    @Test()
+    public void testRingBuffer() throws Exception {
+        final YahooTickHistory history = new YahooTickHistory(5, Arrays.asList(YahooField.PX_LAST, YahooField.PX_VOLUME));
+        for (int i=1; i<=12; ++i) {
+            Assert.assertTrue(history.append("AAPL", i * 1000L, 100d + i, i * 10d));
+        }
+        Assert.assertFalse(history.append("AAPL", 12000L, 0d, 0d), "Stale tick is ignored");
+        Assert.assertEquals(history.size("AAPL"), 5, "History is bounded by capacity");
+        final DataFrame<Long,YahooField> last = history.last("AAPL", 3);
+        Assert.assertEquals(Collect.asList(last.rows().keyArray()), Arrays.asList(10000L, 11000L, 12000L));
+        Assert.assertEquals(last.data().getDouble(0, 0), 110d, 0d);
+        Assert.assertEquals(last.data().getDouble(2, 1), 120d, 0d);
+        Assert.assertEquals(history.last("AAPL", 100).rowCount(), 5, "Last is bounded by size");
+        final DataFrame<Long,YahooField> window = history.window("AAPL", 7500L, 10000L);
+        Assert.assertEquals(Collect.asList(window.rows().keyArray()), Arrays.asList(8000L, 9000L));
+        final DataFrame<Long,YahooField> trailing = history.window("AAPL", Duration.ofSeconds(2));
+        Assert.assertEquals(Collect.asList(trailing.rows().keyArray()), Arrays.asList(11000L, 12000L));
+        Assert.assertEquals(history.last("MSFT", 3).rowCount(), 0, "Unknown ticker has no ticks");
+    }
+
+
+    @Test()
+    public void testAppendSnapshot() throws Exception {
+        final YahooTickHistory history = new YahooTickHistory(100);
+        final DataFrame<String,YahooField> snapshot = DataFrame.of(Array.of("AAPL", "MSFT"), YahooField.class, columns -> {
+            columns.add(YahooField.PX_LAST, Array.of(170.5d, 310.25d));
+            columns.add(YahooField.PX_BID, Array.of(170.4d, 310.2d));
+        });
+        history.append(1000L, snapshot);
+        Assert.assertEquals(history.getTickers().size(), 2);
+        final DataFrame<Long,YahooField> ticks = history.last("MSFT", 1);
+        Assert.assertEquals(ticks.data().getDouble(0L, YahooField.PX_LAST), 310.25d, 0d);
+        Assert.assertEquals(ticks.data().getDouble(0L, YahooField.PX_BID), 310.2d, 0d);
+        Assert.assertTrue(Double.isNaN(ticks.data().getDouble(0L, YahooField.PX_ASK)), "Missing field is NaN");
+    }
+
+}